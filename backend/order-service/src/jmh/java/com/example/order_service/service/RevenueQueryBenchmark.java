@@ -0,0 +1,186 @@
+package com.example.order_service.service;
+
+import com.example.order_service.dto.response.TopCustomerResponse;
+import com.example.order_service.dto.response.TopProductResponse;
+import com.example.order_service.repository.OrderItemRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Top sản phẩm/khách hàng trên H2 với dữ liệu giả lập 3 năm đơn hàng (seed cố định).
+// legacy* chạy lại dạng truy vấn cũ (điều kiện OR theo timeframe, không LIMIT, cắt top N trong Java) để so sánh
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx8g"})
+public class RevenueQueryBenchmark {
+    private static final int USER_COUNT = 50_000;
+    private static final int PRODUCT_COUNT = 2_000;
+    private static final int HISTORY_DAYS = 3 * 365;
+    private static final int BATCH_SIZE = 10_000;
+    private static final int LIMIT = 5;
+
+    private static final String LEGACY_TOP_PRODUCTS =
+            "SELECT oi.product_code, oi.name, SUM(oi.quantity) AS quantity, SUM(oi.quantity * oi.price) AS revenue " +
+                    "FROM order_item oi JOIN orders o ON oi.id_order = o.id_order " +
+                    "WHERE :timeframe = 'all' OR (:timeframe <> 'all' AND o.order_date >= :from) " +
+                    "GROUP BY oi.product_code, oi.name ORDER BY revenue DESC";
+    private static final String LEGACY_TOP_CUSTOMERS =
+            "SELECT o.id_user, o.customer_name, COUNT(o.id_order) AS totalOrders, SUM(o.value) AS totalValue " +
+                    "FROM orders o " +
+                    "WHERE :timeframe = 'all' OR (:timeframe <> 'all' AND o.order_date >= :from) " +
+                    "GROUP BY o.id_user, o.customer_name ORDER BY totalValue DESC";
+
+    @Param({"1000000"})
+    int orderCount;
+
+    @Param({"weekly", "monthly", "yearly"})
+    String timeframe;
+
+    EntityManagerFactory entityManagerFactory;
+    EntityManager entityManager;
+    RevenueService revenueService;
+    Timestamp legacyFrom;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        // NON_KEYWORDS=VALUE: cột orders.value trùng từ khóa của H2
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:revenue-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=MySQL;NON_KEYWORDS=VALUE",
+                "sa", "");
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setPackagesToScan("com.example.order_service.entity");
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        // Schema (gồm các index) sinh từ entity như khi chạy thật
+        factoryBean.setJpaPropertyMap(Map.of(
+                "hibernate.hbm2ddl.auto", "create",
+                "hibernate.physical_naming_strategy",
+                "org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy"));
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+        EntityManager sharedEntityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        OrderItemRepository orderItemRepository = new JpaRepositoryFactory(sharedEntityManager)
+                .getRepository(OrderItemRepository.class);
+        // Top sản phẩm/khách hàng chỉ dùng OrderItemRepository
+        revenueService = new RevenueService(orderItemRepository, null, null);
+        entityManager = entityManagerFactory.createEntityManager();
+        legacyFrom = Timestamp.valueOf(LocalDate.now().minusDays(switch (timeframe) {
+            case "weekly" -> 7;
+            case "monthly" -> 30;
+            default -> 365;
+        }).atStartOfDay());
+
+        try (Connection connection = dataSource.getConnection()) {
+            seed(connection);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public List<TopProductResponse> topProducts() {
+        return revenueService.getTopProductsByRevenue(timeframe, null, null, LIMIT);
+    }
+
+    @Benchmark
+    public List<TopCustomerResponse> topCustomers() {
+        return revenueService.getTopCustomersByValue(timeframe, null, null, LIMIT);
+    }
+
+    @Benchmark
+    public List<Object[]> legacyTopProducts() {
+        return legacyTop(LEGACY_TOP_PRODUCTS);
+    }
+
+    @Benchmark
+    public List<Object[]> legacyTopCustomers() {
+        return legacyTop(LEGACY_TOP_CUSTOMERS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> legacyTop(String sql) {
+        List<Object[]> rows = entityManager.createNativeQuery(sql)
+                .setParameter("timeframe", timeframe)
+                .setParameter("from", legacyFrom)
+                .getResultList();
+        return rows.stream().limit(LIMIT).collect(Collectors.toList());
+    }
+
+    // JDBC batch thay vì JPA để nạp 1 triệu đơn trong thời gian chấp nhận được
+    private void seed(Connection connection) throws SQLException {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        connection.setAutoCommit(false);
+        try (PreparedStatement orders = connection.prepareStatement(
+                "INSERT INTO orders (id_order, id_user, customer_name, total_price, status, order_date, " +
+                        "pick_money, shipping_fee, value) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement items = connection.prepareStatement(
+                     "INSERT INTO order_item (id_order_item, name, id_order, product_code, quantity, price, weight) " +
+                             "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            long itemId = 0;
+            for (int i = 1; i <= orderCount; i++) {
+                String orderId = String.format("o%08d", i);
+                int user = random.nextInt(USER_COUNT);
+                int itemCount = 1 + random.nextInt(3);
+                double value = 0;
+                for (int j = 0; j < itemCount; j++) {
+                    int product = random.nextInt(PRODUCT_COUNT);
+                    int quantity = 1 + random.nextInt(5);
+                    double price = 10_000d + (product % 200) * 1_000d;
+                    value += quantity * price;
+                    items.setString(1, String.format("i%09d", ++itemId));
+                    items.setString(2, "Sản phẩm " + product);
+                    items.setString(3, orderId);
+                    items.setLong(4, product);
+                    items.setInt(5, quantity);
+                    items.setDouble(6, price);
+                    items.setDouble(7, 1);
+                    items.addBatch();
+                }
+                orders.setString(1, orderId);
+                orders.setString(2, "u" + user);
+                orders.setString(3, "Khách hàng " + user);
+                orders.setDouble(4, value + 30_000d);
+                orders.setInt(5, random.nextInt(5));
+                orders.setTimestamp(6, new Timestamp(now - (long) (random.nextDouble() * HISTORY_DAYS * 86_400_000L)));
+                orders.setDouble(7, 0);
+                orders.setDouble(8, 30_000d);
+                orders.setDouble(9, value);
+                orders.addBatch();
+                if (i % BATCH_SIZE == 0 || i == orderCount) {
+                    orders.executeBatch();
+                    items.executeBatch();
+                    connection.commit();
+                }
+            }
+        }
+        try (PreparedStatement analyze = connection.prepareStatement("ANALYZE")) {
+            analyze.execute();
+        }
+        connection.commit();
+    }
+}
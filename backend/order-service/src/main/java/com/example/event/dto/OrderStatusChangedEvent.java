@@ -0,0 +1,19 @@
+package com.example.event.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderStatusChangedEvent {
+    private String orderId;
+    private String userId;
+    private Integer oldStatus;
+    private Integer newStatus;
+    private String newStatusName;
+    private Long changedAt;
+}
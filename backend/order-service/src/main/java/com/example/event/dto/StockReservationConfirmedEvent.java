@@ -0,0 +1,16 @@
+package com.example.event.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Đơn hàng đã commit: product-service trừ tồn kho của lượt giữ hàng. Có thể tới nhiều lần (outbox at-least-once)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockReservationConfirmedEvent {
+    private String reservationId;
+    private String orderId;
+}
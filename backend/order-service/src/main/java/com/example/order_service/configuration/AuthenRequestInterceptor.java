@@ -2,16 +2,12 @@ package com.example.order_service.configuration;
 
 import feign.RequestInterceptor;
 import feign.RequestTemplate;
-import org.springframework.web.context.request.RequestContextHolder;
-import org.springframework.web.context.request.ServletRequestAttributes;
 
 public class AuthenRequestInterceptor implements RequestInterceptor {
 
     @Override
     public void apply(RequestTemplate requestTemplate) {
-        ServletRequestAttributes attributes = (ServletRequestAttributes)
-                RequestContextHolder.getRequestAttributes();
-        String token = attributes.getRequest().getHeader("Authorization");
+        String token = ForwardedAuthorization.current();
         if (token != null) {
             requestTemplate.header("Authorization", token);
         }
@@ -0,0 +1,16 @@
+package com.example.order_service.configuration;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class EnrichmentConfig {
+    // Các lời gọi sang service khác chủ yếu chờ I/O nên mỗi lời gọi 1 virtual thread, không cần giới hạn pool
+    @Bean(destroyMethod = "close")
+    public ExecutorService enrichmentExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.order_service.configuration;
+
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.function.Supplier;
+
+// Header Authorization của request đang xử lý. RequestContextHolder chỉ có trên luồng của request,
+// nên khi gọi service khác trên luồng phụ (virtual thread) thì chụp token trước rồi gắn vào luồng đó
+public final class ForwardedAuthorization {
+    private static final ThreadLocal<String> TOKEN = new ThreadLocal<>();
+
+    private ForwardedAuthorization() {
+    }
+
+    public static String current() {
+        String token = TOKEN.get();
+        if (token != null) {
+            return token;
+        }
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            return attributes.getRequest().getHeader("Authorization");
+        }
+        return null;
+    }
+
+    // Chạy call trên luồng hiện tại với token đã chụp từ luồng request
+    public static <T> Supplier<T> with(String token, Supplier<T> call) {
+        return () -> {
+            TOKEN.set(token);
+            try {
+                return call.get();
+            } finally {
+                TOKEN.remove();
+            }
+        };
+    }
+}
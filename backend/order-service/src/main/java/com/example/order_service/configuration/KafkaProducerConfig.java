@@ -0,0 +1,21 @@
+package com.example.order_service.configuration;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaProducerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+@Configuration
+public class KafkaProducerConfig {
+    // Producer idempotent: broker bỏ bản ghi trùng khi retry và giữ thứ tự trong partition (tối đa 5 request đang chờ)
+    @Bean
+    public DefaultKafkaProducerFactoryCustomizer idempotentProducerCustomizer() {
+        return producerFactory -> producerFactory.updateConfigs(Map.of(
+                ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true,
+                ProducerConfig.ACKS_CONFIG, "all",
+                ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION_CONFIG, 5,
+                ProducerConfig.LINGER_MS_CONFIG, 5));
+    }
+}
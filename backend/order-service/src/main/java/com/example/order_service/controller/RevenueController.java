@@ -6,11 +6,15 @@ import com.example.order_service.dto.response.TopCustomerResponse;
 import com.example.order_service.dto.response.TopProductResponse;
 import com.example.order_service.service.RevenueService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -49,20 +53,31 @@ public class RevenueController {
                 .data(revenueService.getAverageMonthlyRevenue())
                 .build();
     }
+    // Tính lại bảng doanh thu cộng dồn từ lịch sử đơn hàng
+    @PostMapping("/rollups/rebuild")
+    @PreAuthorize("hasAuthority('MANAGE_ORDER')")
+    public ApiResponse<Void> rebuildRollups() {
+        revenueService.rebuildRollups();
+        return ApiResponse.<Void>builder().build();
+    }
     @GetMapping("/top-products")
     public ApiResponse<List<TopProductResponse>> getTopProductsByRevenue(
             @RequestParam(defaultValue = "all") String timeframe,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @RequestParam(defaultValue = "5") int limit) {
         return ApiResponse.<List<TopProductResponse>>builder()
-                .data(revenueService.getTopProductsByRevenue(timeframe,limit))
+                .data(revenueService.getTopProductsByRevenue(timeframe, startDate, endDate, limit))
                 .build();
     }
     @GetMapping("/top-customers")
     public ApiResponse<List<TopCustomerResponse>> getTopCustomersByRevenue(
     @RequestParam(defaultValue = "all") String timeframe,
+    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
     @RequestParam(defaultValue = "5") int limit) {
         return ApiResponse.<List<TopCustomerResponse>>builder()
-                .data(revenueService.getTopCustomersByValue(timeframe,limit))
+                .data(revenueService.getTopCustomersByValue(timeframe, startDate, endDate, limit))
                 .build();
     }
 
@@ -0,0 +1,17 @@
+package com.example.order_service.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StockReservationResponse {
+    String reservationId;
+    List<String> outOfStockProducts;
+    long expiresAt;
+}
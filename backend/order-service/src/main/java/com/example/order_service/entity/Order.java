@@ -13,7 +13,7 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
 
-@Table(name = "orders")
+@Table(name = "orders", indexes = @Index(name = "idx_orders_date_status", columnList = "order_date, status"))
 @Entity
 @Getter
 @Setter
@@ -33,6 +33,12 @@ public class Order {
     @Column(nullable = false)
     int status = 0 ;
 
+    // Khóa lạc quan: admin, người dùng và OrderStatusSync cùng đổi trạng thái, ai ghi sau trên bản cũ thì bị từ chối
+    // thay vì ghi đè (và cộng doanh thu 2 lần)
+    @Version
+    @ColumnDefault("0")
+    long version;
+
     @Column(nullable = false, updatable = false)
     @CreationTimestamp
     Timestamp order_date;
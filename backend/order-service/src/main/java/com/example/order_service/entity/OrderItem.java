@@ -6,6 +6,7 @@ import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
+@Table(name = "order_item", indexes = @Index(name = "idx_order_item_order_product", columnList = "id_order, productCode"))
 @Entity
 @Getter
 @Setter
@@ -0,0 +1,51 @@
+package com.example.order_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.sql.Timestamp;
+
+// Sự kiện Kafka chờ gửi, ghi cùng transaction với đơn hàng. OutboxRelay đọc theo id tăng dần và gửi đi
+@Table(name = "order_outbox", indexes = @Index(name = "idx_outbox_unpublished", columnList = "publishedAt, parkedAt, id"))
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(nullable = false)
+    String topic;
+
+    // Key Kafka (id đơn hàng): các sự kiện cùng key vào cùng partition nên giữ đúng thứ tự
+    String messageKey;
+
+    // Tên class của payload để dựng lại object khi gửi
+    @Column(nullable = false)
+    String eventType;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    String payload;
+
+    @Column(nullable = false, updatable = false)
+    @CreationTimestamp
+    Timestamp createdAt;
+
+    // null = chưa gửi
+    Timestamp publishedAt;
+
+    int attempts;
+
+    String lastError;
+
+    // Khác null = lỗi không thể tự khỏi (không dựng lại được payload, bản ghi quá lớn...) quá max-attempts lần,
+    // relay bỏ qua để không chặn các sự kiện sau. Đặt lại null để gửi lại sau khi sửa
+    Timestamp parkedAt;
+}
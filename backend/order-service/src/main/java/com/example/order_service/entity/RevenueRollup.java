@@ -0,0 +1,36 @@
+package com.example.order_service.entity;
+
+import com.example.order_service.enums.RevenueGranularity;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+// Doanh thu đã cộng dồn của các đơn giao thành công theo từng kỳ, cập nhật mỗi khi đơn vào/ra trạng thái DELIVERED
+@Table(name = "revenue_rollup", uniqueConstraints = @UniqueConstraint(
+        name = "uk_revenue_rollup_bucket", columnNames = {"granularity", "period"}))
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RevenueRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    RevenueGranularity granularity;
+
+    @Column(nullable = false, length = 16)
+    String period;
+
+    @Column(nullable = false)
+    double totalRevenue;
+
+    // Kỳ về 0 đơn (đơn bị trả lại) thì không hiển thị
+    @Column(nullable = false)
+    long orderCount;
+}
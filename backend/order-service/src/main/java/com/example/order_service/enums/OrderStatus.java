@@ -38,6 +38,14 @@ public enum OrderStatus {
         }
         throw new IllegalArgumentException("Không tìm thấy trạng thái tương ứng với mã: " + code);
     }
+    // Trạng thái do GHTK quyết định, cần đồng bộ định kỳ; các trạng thái còn lại do admin duyệt hoặc đã kết thúc
+    public boolean isSyncedFromCarrier() {
+        return this == WAITING_FOR_SHIPMENT
+                || this == WAITING_FOR_PICKUP
+                || this == SHIPPING
+                || this == RETURN_APPROVED;
+    }
+
     public static OrderStatus fromGHTKStatus(int ghtkStatus) {
         return switch (ghtkStatus) {
             case 1 -> PENDING_CONFIRMATION;
@@ -0,0 +1,32 @@
+package com.example.order_service.enums;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.WeekFields;
+
+// Mức gộp doanh thu. Nhãn kỳ giữ đúng định dạng các API doanh thu đã trả trước đây
+public enum RevenueGranularity {
+    DAY,
+    WEEK,
+    MONTH,
+    YEAR,
+    // 1 dòng duy nhất cho toàn bộ lịch sử; có dòng này nghĩa là đã backfill
+    ALL;
+
+    public static final String ALL_PERIOD = "all";
+
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+    // Giống WEEK() mặc định của MySQL (mode 0): tuần bắt đầu chủ nhật, các ngày trước chủ nhật đầu năm là tuần 0
+    private static final WeekFields MYSQL_WEEK = WeekFields.of(DayOfWeek.SUNDAY, 7);
+
+    public String periodOf(LocalDate date) {
+        return switch (this) {
+            case DAY -> date.toString();
+            case WEEK -> date.getYear() + "-W" + String.format("%02d", date.get(MYSQL_WEEK.weekOfYear()));
+            case MONTH -> date.format(MONTH_FORMAT);
+            case YEAR -> String.valueOf(date.getYear());
+            case ALL -> ALL_PERIOD;
+        };
+    }
+}
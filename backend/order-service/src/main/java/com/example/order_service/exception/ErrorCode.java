@@ -28,6 +28,8 @@ public enum ErrorCode {
     INVALID_STATUS(2005,"Yêu cầu thay đổi trạng thái đơn hàng không hợp lệ",HttpStatus.NOT_FOUND),
     CANNOT_CANCEL_ORDER(2004,"Đơn hàng đã được vận chuyển, không thể yêu cầu hủy đơn",HttpStatus.BAD_REQUEST),
     CANNOT_RETURN_ORDER(2003,"Đơn hàng chưa giao thành công, không thể yêu cầu trả đơn",HttpStatus.BAD_REQUEST),
+    INVALID_TIMEFRAME(2006,"Khoảng thời gian thống kê không hợp lệ",HttpStatus.BAD_REQUEST),
+    ORDER_STATUS_CONFLICT(2007,"Trạng thái đơn hàng vừa được cập nhật, vui lòng tải lại",HttpStatus.CONFLICT),
     UNCATEGORIZED_EXCEPTION(9999,"uncategorized exception", HttpStatus.INTERNAL_SERVER_ERROR);
     private int code;
     private String message;
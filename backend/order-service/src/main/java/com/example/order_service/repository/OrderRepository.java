@@ -4,10 +4,12 @@ import com.example.order_service.entity.Order;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -20,38 +22,23 @@ public interface OrderRepository extends JpaRepository<Order, String> {
                                      @Param("status") Integer status,
                                      Pageable pageable);
 
-    @Query("SELECT DATE(o.order_date) AS timePeriod, SUM(o.totalPrice) AS totalRevenue " +
-            "FROM Order o " +
-            "WHERE o.status = 3 " +
-            "GROUP BY DATE(o.order_date)")
-    List<Object[]> getDailyRevenue();
-
-    @Query(value = "SELECT CONCAT(YEAR(o.order_date), '-W', LPAD(WEEK(o.order_date), 2, '0')) AS timePeriod, SUM(o.total_price) AS totalRevenue " +
-            "FROM orders o " +
-            "WHERE o.status = 3 " +
-            "GROUP BY CONCAT(YEAR(o.order_date), '-W', LPAD(WEEK(o.order_date), 2, '0'))", nativeQuery = true)
-    List<Object[]> getWeeklyRevenue();
-
-    @Query(value = "SELECT CONCAT(YEAR(o.order_date), '-', LPAD(MONTH(o.order_date), 2, '0')) AS timePeriod, SUM(o.total_price) AS totalRevenue " +
-            "FROM orders o " +
-            "WHERE o.status = 3 " +
-            "GROUP BY CONCAT(YEAR(o.order_date), '-', LPAD(MONTH(o.order_date), 2, '0'))", nativeQuery = true)
-    List<Object[]> getMonthlyRevenue();
-
-    @Query("SELECT YEAR(o.order_date) AS timePeriod, SUM(o.totalPrice) AS totalRevenue " +
-            "FROM Order o " +
-            "WHERE o.status = 3 " +
-            "GROUP BY YEAR(o.order_date)")
-    List<Object[]> getYearlyRevenue();
-
-    @Query("SELECT AVG(monthlyRevenue.totalRevenue) " +
-            "FROM (SELECT SUM(o.totalPrice) AS totalRevenue " +
-            "FROM Order o " +
-            "WHERE o.status = 3 " +
-            "GROUP BY YEAR(o.order_date), MONTH(o.order_date)) AS monthlyRevenue")
-    Double getAverageMonthlyRevenue();
-
     @Query("SELECT o FROM Order o WHERE " +
             "(:keyword IS NULL OR LOWER(o.id_order) LIKE LOWER(CONCAT(:keyword, '%')))")
     Page<Order> searchByQuery(Pageable pageable, @Param("keyword") String keyword);
+
+    // Duyệt theo id (keyset) để đơn đổi trạng thái giữa chừng không làm lệch trang. row: [id, id user, status]
+    @Query("SELECT o.id_order, o.id_user, o.status FROM Order o " +
+            "WHERE o.status IN :statuses AND o.id_order > :afterId " +
+            "ORDER BY o.id_order")
+    List<Object[]> findStatusBatch(@Param("statuses") Collection<Integer> statuses,
+                                   @Param("afterId") String afterId,
+                                   Pageable pageable);
+
+    // Chỉ ghi khi trạng thái chưa bị admin/luồng khác đổi kể từ lúc đọc
+    @Modifying
+    @Query("UPDATE Order o SET o.status = :newStatus, o.version = o.version + 1 " +
+            "WHERE o.id_order = :orderId AND o.status = :expectedStatus")
+    int updateStatusIfUnchanged(@Param("orderId") String orderId,
+                                @Param("expectedStatus") int expectedStatus,
+                                @Param("newStatus") int newStatus);
 }
\ No newline at end of file
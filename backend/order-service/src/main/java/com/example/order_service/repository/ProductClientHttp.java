@@ -3,8 +3,11 @@ package com.example.order_service.repository;
 import com.example.order_service.configuration.AuthenRequestInterceptor;
 import com.example.order_service.dto.request.OrderItemRequest;
 import com.example.order_service.dto.response.ApiResponse;
+import com.example.order_service.dto.response.StockReservationResponse;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 
@@ -15,4 +18,10 @@ import java.util.List;
 public interface ProductClientHttp {
     @PostMapping (value = "/stock/check",produces = MediaType.APPLICATION_JSON_VALUE)
     ApiResponse<List<String>> isStock(@RequestBody List<OrderItemRequest> request);
+
+    @PostMapping(value = "/stock/reservations", produces = MediaType.APPLICATION_JSON_VALUE)
+    ApiResponse<StockReservationResponse> reserveStock(@RequestBody List<OrderItemRequest> request);
+
+    @DeleteMapping(value = "/stock/reservations/{reservationId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    ApiResponse<Void> releaseReservation(@PathVariable String reservationId);
 }
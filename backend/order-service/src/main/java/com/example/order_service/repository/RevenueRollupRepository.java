@@ -0,0 +1,74 @@
+package com.example.order_service.repository;
+
+import com.example.order_service.entity.RevenueRollup;
+import com.example.order_service.enums.RevenueGranularity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RevenueRollupRepository extends JpaRepository<RevenueRollup, Long> {
+
+    @Query("SELECT r FROM RevenueRollup r WHERE r.granularity = :granularity AND r.orderCount > 0 ORDER BY r.period")
+    List<RevenueRollup> findBuckets(@Param("granularity") RevenueGranularity granularity);
+
+    @Query("SELECT AVG(r.totalRevenue) FROM RevenueRollup r " +
+            "WHERE r.granularity = com.example.order_service.enums.RevenueGranularity.MONTH AND r.orderCount > 0")
+    Double getAverageMonthlyRevenue();
+
+    boolean existsByGranularity(RevenueGranularity granularity);
+
+    // Cộng dồn vào kỳ, tạo mới nếu chưa có. Cộng trong câu lệnh nên nhiều transaction cùng lúc không mất dữ liệu
+    @Modifying
+    @Query(value = "INSERT INTO revenue_rollup (granularity, period, total_revenue, order_count) " +
+            "VALUES (:granularity, :period, :revenue, :orders) " +
+            "ON DUPLICATE KEY UPDATE total_revenue = total_revenue + :revenue, order_count = order_count + :orders",
+            nativeQuery = true)
+    int addToBucket(@Param("granularity") String granularity,
+                    @Param("period") String period,
+                    @Param("revenue") double revenue,
+                    @Param("orders") long orders);
+
+    @Modifying
+    @Query("DELETE FROM RevenueRollup r")
+    int deleteAllBuckets();
+
+    // Backfill: nhãn kỳ tạo giống RevenueGranularity.periodOf
+    @Modifying
+    @Query(value = "INSERT INTO revenue_rollup (granularity, period, total_revenue, order_count) " +
+            "SELECT 'DAY', DATE_FORMAT(o.order_date, '%Y-%m-%d'), COALESCE(SUM(o.total_price), 0), COUNT(*) " +
+            "FROM orders o WHERE o.status = 3 " +
+            "GROUP BY DATE_FORMAT(o.order_date, '%Y-%m-%d')", nativeQuery = true)
+    int backfillDaily();
+
+    @Modifying
+    @Query(value = "INSERT INTO revenue_rollup (granularity, period, total_revenue, order_count) " +
+            "SELECT 'WEEK', CONCAT(YEAR(o.order_date), '-W', LPAD(WEEK(o.order_date), 2, '0')), COALESCE(SUM(o.total_price), 0), COUNT(*) " +
+            "FROM orders o WHERE o.status = 3 " +
+            "GROUP BY CONCAT(YEAR(o.order_date), '-W', LPAD(WEEK(o.order_date), 2, '0'))", nativeQuery = true)
+    int backfillWeekly();
+
+    @Modifying
+    @Query(value = "INSERT INTO revenue_rollup (granularity, period, total_revenue, order_count) " +
+            "SELECT 'MONTH', DATE_FORMAT(o.order_date, '%Y-%m'), COALESCE(SUM(o.total_price), 0), COUNT(*) " +
+            "FROM orders o WHERE o.status = 3 " +
+            "GROUP BY DATE_FORMAT(o.order_date, '%Y-%m')", nativeQuery = true)
+    int backfillMonthly();
+
+    @Modifying
+    @Query(value = "INSERT INTO revenue_rollup (granularity, period, total_revenue, order_count) " +
+            "SELECT 'YEAR', CAST(YEAR(o.order_date) AS CHAR), COALESCE(SUM(o.total_price), 0), COUNT(*) " +
+            "FROM orders o WHERE o.status = 3 " +
+            "GROUP BY YEAR(o.order_date)", nativeQuery = true)
+    int backfillYearly();
+
+    @Modifying
+    @Query(value = "INSERT INTO revenue_rollup (granularity, period, total_revenue, order_count) " +
+            "SELECT 'ALL', 'all', COALESCE(SUM(o.total_price), 0), COUNT(*) " +
+            "FROM orders o WHERE o.status = 3", nativeQuery = true)
+    int backfillAll();
+}
@@ -0,0 +1,64 @@
+package com.example.order_service.service;
+
+import com.example.order_service.configuration.ForwardedAuthorization;
+import com.example.order_service.dto.response.ApiResponse;
+import com.example.order_service.dto.response.OrderStatusResponse;
+import com.example.order_service.dto.response.ProfileResponse;
+import com.example.order_service.repository.ProfileClientHttp;
+import com.example.order_service.repository.ShippingClientHttp;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Gọi song song các service bên ngoài để bổ sung thông tin cho đơn hàng. Mỗi lời gọi có timeout riêng;
+// lỗi hoặc quá hạn thì trả về null để vẫn trả được phần dữ liệu còn lại
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OrderEnrichment {
+    ProfileClientHttp profileClientHttp;
+    ShippingClientHttp shippingClientHttp;
+    ExecutorService enrichmentExecutor;
+
+    @NonFinal
+    @Value("${order.enrichment.profile-timeout-ms:2000}")
+    long profileTimeoutMs;
+
+    @NonFinal
+    @Value("${order.enrichment.shipping-timeout-ms:3000}")
+    long shippingTimeoutMs;
+
+    public CompletableFuture<ProfileResponse> fetchProfile(String userId) {
+        return call("profile " + userId, () -> dataOf(profileClientHttp.getProfile(userId)), profileTimeoutMs);
+    }
+
+    public CompletableFuture<OrderStatusResponse> fetchShippingStatus(String orderId) {
+        return call("shipping status " + orderId, () -> dataOf(shippingClientHttp.getShippingStatus(orderId)),
+                shippingTimeoutMs);
+    }
+
+    private <T> CompletableFuture<T> call(String description, Supplier<T> call, long timeoutMs) {
+        // Chụp token trên luồng request trước khi chuyển sang virtual thread
+        String token = ForwardedAuthorization.current();
+        return CompletableFuture.supplyAsync(ForwardedAuthorization.with(token, call), enrichmentExecutor)
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    log.warn("Không lấy được {} trong {} ms: {}", description, timeoutMs, e.toString());
+                    return null;
+                });
+    }
+
+    private static <T> T dataOf(ApiResponse<T> response) {
+        return response != null ? response.getData() : null;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.order_service.service;
 
 import com.example.event.dto.ItemUpdateStock;
+import com.example.event.dto.StockReservationConfirmedEvent;
 import com.example.event.dto.UpdateStockRequest;
 import com.example.order_service.dto.request.OrderItemRequest;
 import com.example.order_service.dto.request.OrderRequest;
@@ -8,6 +9,8 @@ import com.example.order_service.dto.request.ShippingRequest;
 import com.example.order_service.dto.response.OrderResponse;
 import com.example.order_service.dto.response.OrderStatusResponse;
 import com.example.order_service.dto.response.PageResponse;
+import com.example.order_service.dto.response.ProfileResponse;
+import com.example.order_service.dto.response.StockReservationResponse;
 import com.example.order_service.entity.Order;
 import com.example.order_service.entity.OrderItem;
 import com.example.order_service.enums.OrderStatus;
@@ -24,71 +27,93 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class OrderService {
+    public static final String STOCK_RESERVATION_CONFIRMED_TOPIC = "stock-reservation-confirmed";
+
     OrderRepository orderRepository;
     OrderMapper orderMapper;
-    ProfileClientHttp profileClientHttp;
     OrderItemMapper orderItemMapper;
-    KafkaTemplate<String, Object> kafkaTemplate;
+    OrderOutbox orderOutbox;
     ProductClientHttp productClientHttp;
     ShippingClientHttp shippingClientHttp;
+    OrderEnrichment orderEnrichment;
+    OrderStatusSync orderStatusSync;
+    RevenueRollups revenueRollups;
+    TransactionTemplate transactionTemplate;
 
-    @Transactional
+    // Gọi giữ hàng trước, ngoài transaction DB, để không giữ kết nối DB trong lúc chờ product-service
     public OrderResponse createOrder(OrderRequest request) {
-        Order order = orderMapper.toOrder(request);
-        // Kiểm tra hàng hóa đã hết hàng
-        List<String> outOfStockProducts = productClientHttp.isStock(request.getOrderItems()).getData();
-        if (!outOfStockProducts.isEmpty()) {
-            throw new AppException(ErrorCode.OUT_OF_STOCK, String.join(", ", outOfStockProducts));
+        // Giữ hàng bên product-service, hết hàng thì báo lỗi
+        StockReservationResponse reservation = productClientHttp.reserveStock(request.getOrderItems()).getData();
+        if (!reservation.getOutOfStockProducts().isEmpty()) {
+            throw new AppException(ErrorCode.OUT_OF_STOCK, String.join(", ", reservation.getOutOfStockProducts()));
         }
-        // Tạo danh sách cập nhật tồn kho
-        UpdateStockRequest listUpdations = new UpdateStockRequest(new ArrayList<>());
-        List<OrderItem> orderItems = new ArrayList<>();
+        try {
+            return transactionTemplate.execute(tx -> saveOrder(request, reservation.getReservationId()));
+        } catch (RuntimeException e) {
+            // Đơn không được tạo (kể cả lỗi khi commit): trả lại hàng đã giữ
+            releaseReservation(reservation.getReservationId());
+            throw e;
+        }
+    }
 
+    private OrderResponse saveOrder(OrderRequest request, String reservationId) {
+        Order order = orderMapper.toOrder(request);
+        List<OrderItem> orderItems = new ArrayList<>();
         if (request.getOrderItems() != null) {
             for (OrderItemRequest itemRequest : request.getOrderItems()) {
                 OrderItem orderItem = orderItemMapper.toOrderItem(itemRequest);
                 orderItem.setOrder(order);
                 orderItems.add(orderItem);
-                // Thêm thông tin cập nhật tồn kho (giảm tồn kho)
-                listUpdations.getItems().add(new ItemUpdateStock(
-                        Long.parseLong(itemRequest.getProductCode()),
-                        -itemRequest.getQuantity(),
-                        itemRequest.getWeight()));
             }
         }
         order.setOrderItems(orderItems);
         // Lưu Order vào database
         order = orderRepository.save(order);
-        // Gửi danh sách cập nhật tồn kho đến Kafka
-        kafkaTemplate.send("update-stock", listUpdations);
+        // Xác nhận trừ tồn kho qua outbox: ghi cùng transaction với đơn nên đơn đã commit thì chắc chắn
+        // được gửi (và gửi lại tới khi thành công), product-service bỏ qua lượt đã xác nhận
+        orderOutbox.enqueue(STOCK_RESERVATION_CONFIRMED_TOPIC, order.getId_order(),
+                new StockReservationConfirmedEvent(reservationId, order.getId_order()));
         return orderMapper.toOrderResponse(order);
     }
 
+    private void releaseReservation(String reservationId) {
+        try {
+            productClientHttp.releaseReservation(reservationId);
+        } catch (Exception e) {
+            // Đơn không được tạo nên không mất hàng; lượt giữ sẽ tự hết hạn bên product-service
+            log.error("Không thể trả lại giữ hàng {}", reservationId, e);
+        }
+    }
+
     // Helper method to restore stock
     private void restoreStock(Order order) {
-        UpdateStockRequest restoreRequest = new UpdateStockRequest(new ArrayList<>());
+        // Đơn chỉ hoàn kho 1 lần (hủy hoặc trả hàng đều là trạng thái cuối) nên id đơn đủ làm khóa chống trùng
+        UpdateStockRequest restoreRequest = new UpdateStockRequest(new ArrayList<>(), "restore-" + order.getId_order());
         for (OrderItem item : order.getOrderItems()) {
             restoreRequest.getItems().add(new ItemUpdateStock(
                     item.getProductCode(),
                     item.getQuantity(),
                     item.getWeight()));
         }
-        kafkaTemplate.send("update-stock", restoreRequest);
+        // Ghi vào outbox cùng transaction, OutboxRelay gửi sang product-service sau khi commit
+        orderOutbox.enqueue("update-stock", order.getId_order(), restoreRequest);
         log.info("Restored stock for order {}", order.getId_order());
     }
 
@@ -103,7 +128,7 @@ public class OrderService {
             throw new AppException(ErrorCode.CANNOT_CANCEL_ORDER);
         }
         order.setStatus(OrderStatus.CANCELED.getCode());
-        order = orderRepository.save(order);
+        order = saveStatus(order);
 
         // Restore stock when order is canceled
         restoreStock(order);
@@ -117,7 +142,8 @@ public class OrderService {
         Order order = orderRepository.findById(id_Order).orElseThrow(
                 () -> new AppException(ErrorCode.ORDER_NOT_FOUND)
         );
-        OrderStatus statusOrder = OrderStatus.fromCode(order.getStatus());
+        int oldStatus = order.getStatus();
+        OrderStatus statusOrder = OrderStatus.fromCode(oldStatus);
         OrderStatus newStatus = OrderStatus.valueOf(status);
 
         // Nếu trạng thái mới giống trạng thái cũ thì báo lỗi
@@ -180,21 +206,46 @@ public class OrderService {
             default:
                 throw new AppException(ErrorCode.INVALID_STATUS);
         }
-        return orderMapper.toOrderResponse(orderRepository.save(order));
+        // Chỉ cộng/trừ doanh thu khi chính lần ghi này đổi được trạng thái
+        order = saveStatus(order);
+        revenueRollups.statusChanged(order, oldStatus, order.getStatus());
+        return orderMapper.toOrderResponse(order);
+    }
+
+    // Ghi ngay để phát hiện đơn đã bị đổi trạng thái ở nơi khác (version lệch) trước khi làm tiếp
+    private Order saveStatus(Order order) {
+        try {
+            return orderRepository.saveAndFlush(order);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new AppException(ErrorCode.ORDER_STATUS_CONFLICT);
+        }
     }
 
+    // Đọc đơn 1 lần rồi gọi song song GHTK và profile-service; service nào lỗi/chậm thì bỏ qua phần đó
     public OrderResponse getOrderById(String orderId) {
-        Order order = updateOrderStatusFromGHTK(orderId);
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_FOUND));
+        CompletableFuture<OrderStatusResponse> shippingStatus = needsShippingStatus(order)
+                ? orderEnrichment.fetchShippingStatus(orderId)
+                : CompletableFuture.completedFuture(null);
+        CompletableFuture<ProfileResponse> customer = orderEnrichment.fetchProfile(order.getId_user());
+
+        OrderStatusResponse status = shippingStatus.join();
+        if (status != null) {
+            orderStatusSync.apply(order, status);
+        }
         log.info("order {}", order);
         OrderResponse response = orderMapper.toOrderResponse(order);
-
-        response.setCustomer(profileClientHttp.getProfile(order.getId_user()).getData());
+        response.setCustomer(customer.join());
         return response;
     }
 
+    @Transactional
     public void deleteOrder(String orderId) {
-        orderRepository.findById(orderId)
+        Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_FOUND));
+        // Xóa đơn đã giao thì trừ khỏi doanh thu như đơn rời trạng thái DELIVERED
+        revenueRollups.statusChanged(order, order.getStatus(), OrderStatus.CANCELED.getCode());
         orderRepository.deleteById(orderId);
     }
 
@@ -208,10 +259,8 @@ public class OrderService {
     public PageResponse<OrderResponse> getAllOrders(int page, int size, String query) {
         Pageable pageable = PageRequest.of(page - 1, size, Sort.by("order_date").descending());
 
+        // Trạng thái vận chuyển được OrderStatusSync cập nhật ở nền, ở đây chỉ đọc DB
         Page<Order> orderPage = orderRepository.searchByQuery(pageable, query);
-        for (Order order : orderPage) {
-            updateOrderStatusFromGHTK(order.getId_order());
-        }
         return getPaginateOrderResponse(page, orderPage);
     }
 
@@ -239,36 +288,8 @@ public class OrderService {
         return getOrdersByUserId(idUser, page, size, status);
     }
 
-    public Order updateOrderStatusFromGHTK(String orderId) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_FOUND));
-
-        // Nếu trạng thái yêu cầu admin duyệt thì không cần lấy trạng thái từ GHTK
-        if (order.getStatus() == OrderStatus.PENDING_CONFIRMATION.getCode()
-                || order.getStatus() == OrderStatus.RETURN_REQUESTED.getCode()
-                || order.getStatus() == OrderStatus.DELIVERED.getCode()
-                || order.getStatus() == OrderStatus.CANCELED.getCode()) {
-            return order;
-        }
-
-        // Gọi API từ GHTK
-        OrderStatusResponse response = shippingClientHttp.getShippingStatus(orderId).getData();
-        log.info(response.toString());
-        if (response.isSuccess() && response.getOrder() != null) {
-            int ghtkStatus = response.getOrder().getStatus();
-            OrderStatus mappedStatus = OrderStatus.fromGHTKStatus(ghtkStatus);
-
-            // Chỉ cập nhật nếu trạng thái thay đổi
-            if (order.getStatus() != mappedStatus.getCode()) {
-                log.info("Cập nhật trạng thái đơn hàng {} từ {} -> {}",
-                        orderId, order.getStatus(), mappedStatus.getCode());
-
-                order.setStatus(mappedStatus.getCode());
-                orderRepository.save(order);
-            }
-        } else {
-            log.warn("Không thể lấy trạng thái đơn hàng từ GHTK: {}", response.getMessage());
-        }
-        return order;
+    // Nếu trạng thái yêu cầu admin duyệt hoặc đã kết thúc thì không cần lấy trạng thái từ GHTK
+    private boolean needsShippingStatus(Order order) {
+        return OrderStatus.fromCode(order.getStatus()).isSyncedFromCarrier();
     }
 }
\ No newline at end of file
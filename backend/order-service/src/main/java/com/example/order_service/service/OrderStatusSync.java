@@ -0,0 +1,124 @@
+package com.example.order_service.service;
+
+import com.example.event.dto.OrderStatusChangedEvent;
+import com.example.order_service.dto.response.OrderStatusResponse;
+import com.example.order_service.entity.Order;
+import com.example.order_service.enums.OrderStatus;
+import com.example.order_service.repository.OrderRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Đồng bộ trạng thái vận chuyển từ GHTK ở nền: định kỳ quét các đơn đang giao theo lô, gọi song song
+// shipping-service cho cả lô, lưu trạng thái mới và ghi sự kiện vào outbox. API danh sách đơn chỉ đọc DB
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OrderStatusSync {
+    public static final String ORDER_STATUS_TOPIC = "order-status-changed";
+
+    private static final List<Integer> SYNCED_STATUSES = Arrays.stream(OrderStatus.values())
+            .filter(OrderStatus::isSyncedFromCarrier)
+            .map(OrderStatus::getCode)
+            .toList();
+
+    OrderRepository orderRepository;
+    OrderEnrichment orderEnrichment;
+    OrderOutbox orderOutbox;
+    RevenueRollups revenueRollups;
+    TransactionTemplate transactionTemplate;
+
+    @NonFinal
+    @Value("${order.status-sync.batch-size:50}")
+    int batchSize;
+
+    @Scheduled(initialDelayString = "${order.status-sync.initial-delay-ms:30000}",
+            fixedDelayString = "${order.status-sync.interval-ms:300000}")
+    public void syncInFlightOrders() {
+        int checked = 0;
+        int changed = 0;
+        String afterId = "";
+        List<Object[]> batch;
+        do {
+            batch = orderRepository.findStatusBatch(SYNCED_STATUSES, afterId, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<CompletableFuture<OrderStatusResponse>> statuses = new ArrayList<>(batch.size());
+            for (Object[] row : batch) {
+                statuses.add(orderEnrichment.fetchShippingStatus((String) row[0]));
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                Object[] row = batch.get(i);
+                OrderStatusResponse status = statuses.get(i).join();
+                // Lỗi/quá hạn thì giữ nguyên, lần quét sau thử lại
+                if (status != null && apply((String) row[0], (String) row[1], ((Number) row[2]).intValue(), status) != null) {
+                    changed++;
+                }
+            }
+            checked += batch.size();
+            afterId = (String) batch.get(batch.size() - 1)[0];
+        } while (batch.size() == batchSize);
+        if (checked > 0) {
+            log.info("Đồng bộ trạng thái GHTK: kiểm tra {} đơn, cập nhật {} đơn", checked, changed);
+        }
+    }
+
+    // Dùng khi admin xem chi tiết đơn: áp dụng trạng thái vừa lấy được lên entity đang trả về
+    public void apply(Order order, OrderStatusResponse response) {
+        OrderStatus newStatus = apply(order.getId_order(), order.getId_user(), order.getStatus(), response);
+        if (newStatus != null) {
+            order.setStatus(newStatus.getCode());
+        }
+    }
+
+    // Trả về trạng thái mới nếu đã lưu, null nếu không đổi
+    private OrderStatus apply(String orderId, String userId, int currentStatus, OrderStatusResponse response) {
+        if (!response.isSuccess() || response.getOrder() == null) {
+            log.warn("Không thể lấy trạng thái đơn hàng {} từ GHTK: {}", orderId, response.getMessage());
+            return null;
+        }
+        OrderStatus mappedStatus = OrderStatus.fromGHTKStatus(response.getOrder().getStatus());
+        if (currentStatus == mappedStatus.getCode()) {
+            return null;
+        }
+        OrderStatusChangedEvent event = OrderStatusChangedEvent.builder()
+                .orderId(orderId)
+                .userId(userId)
+                .oldStatus(currentStatus)
+                .newStatus(mappedStatus.getCode())
+                .newStatusName(mappedStatus.name())
+                .changedAt(System.currentTimeMillis())
+                .build();
+        Boolean updated = transactionTemplate.execute(tx -> {
+            if (orderRepository.updateStatusIfUnchanged(orderId, currentStatus, mappedStatus.getCode()) == 0) {
+                // Trạng thái đã đổi ở nơi khác sau khi đọc
+                return false;
+            }
+            if (RevenueRollups.affects(currentStatus, mappedStatus.getCode())) {
+                orderRepository.findById(orderId).ifPresent(order ->
+                        revenueRollups.statusChanged(order, currentStatus, mappedStatus.getCode()));
+            }
+            orderOutbox.enqueue(ORDER_STATUS_TOPIC, orderId, event);
+            return true;
+        });
+        if (!Boolean.TRUE.equals(updated)) {
+            return null;
+        }
+        log.info("Cập nhật trạng thái đơn hàng {} từ {} -> {}", orderId, currentStatus, mappedStatus.getCode());
+        return mappedStatus;
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.order_service.service;
+
+import com.example.order_service.entity.OutboxEvent;
+import com.example.order_service.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.RetriableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Chuyển sự kiện từ bảng outbox sang Kafka theo lô. Các key khác nhau được gửi song song, còn sự kiện cùng key
+// chỉ được gửi khi sự kiện trước của key đó đã được ack, nên 1 sự kiện lỗi thì các sự kiện sau của key đó
+// không đi trước nó. Gửi được mới đánh dấu đã gửi nên nếu service chết giữa chừng thì lần chạy sau gửi lại
+// (at-least-once)
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OutboxRelay {
+    OutboxEventRepository outboxEventRepository;
+    KafkaTemplate<String, Object> kafkaTemplate;
+    TransactionTemplate transactionTemplate;
+    ObjectMapper objectMapper;
+
+    @NonFinal
+    @Value("${order.outbox.batch-size:200}")
+    int batchSize;
+
+    @NonFinal
+    @Value("${order.outbox.send-timeout-ms:10000}")
+    long sendTimeoutMs;
+
+    @NonFinal
+    @Value("${order.outbox.max-attempts:5}")
+    int maxAttempts;
+
+    @NonFinal
+    @Value("${order.outbox.retention-hours:72}")
+    long retentionHours;
+
+    private record BatchResult(int published, boolean complete) {
+    }
+
+    @Scheduled(fixedDelayString = "${order.outbox.poll-interval-ms:500}")
+    public void relay() {
+        try {
+            drain();
+        } catch (Exception e) {
+            log.error("Không thể gửi sự kiện outbox", e);
+        }
+    }
+
+    // Gửi tới khi hết sự kiện hoặc có sự kiện phải chờ lần sau; trả về số sự kiện đã gửi
+    public int drain() {
+        int total = 0;
+        BatchResult result;
+        do {
+            result = drainBatch();
+            total += result.published();
+        } while (result.complete());
+        return total;
+    }
+
+    @Scheduled(fixedDelayString = "${order.outbox.cleanup-interval-ms:3600000}")
+    public void deletePublished() {
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(Duration.ofHours(retentionHours)));
+        Integer deleted = transactionTemplate.execute(tx -> outboxEventRepository.deletePublishedBefore(cutoff));
+        if (deleted != null && deleted > 0) {
+            log.info("Đã xóa {} sự kiện outbox đã gửi", deleted);
+        }
+    }
+
+    private BatchResult drainBatch() {
+        BatchResult result = transactionTemplate.execute(tx -> {
+            List<OutboxEvent> events = outboxEventRepository.lockUnpublished(PageRequest.of(0, batchSize));
+            if (events.isEmpty()) {
+                return new BatchResult(0, false);
+            }
+            // Nối các lần gửi cùng key thành chuỗi: sự kiện sau chỉ gửi khi sự kiện trước thành công
+            Map<String, CompletableFuture<Void>> lastSendByKey = new HashMap<>();
+            List<CompletableFuture<Void>> sends = new ArrayList<>(events.size());
+            for (OutboxEvent event : events) {
+                CompletableFuture<Void> previous = lastSendByKey.get(event.getMessageKey());
+                CompletableFuture<Void> send = previous == null
+                        ? send(event)
+                        : previous.thenComposeAsync(ignored -> send(event));
+                lastSendByKey.put(event.getMessageKey(), send);
+                sends.add(send);
+            }
+
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            List<Long> publishedIds = new ArrayList<>(events.size());
+            // Key đã có sự kiện lỗi (kể cả bị park): các sự kiện sau của key đó chưa được gửi, giữ lại cho lần sau
+            Set<String> failedKeys = new HashSet<>();
+            for (int i = 0; i < events.size(); i++) {
+                OutboxEvent event = events.get(i);
+                if (failedKeys.contains(event.getMessageKey())) {
+                    sends.get(i).cancel(false);
+                    continue;
+                }
+                Throwable error = await(sends.get(i));
+                if (error == null) {
+                    publishedIds.add(event.getId());
+                    continue;
+                }
+                failedKeys.add(event.getMessageKey());
+                event.setAttempts(event.getAttempts() + 1);
+                String message = error.toString();
+                event.setLastError(message.length() > 255 ? message.substring(0, 255) : message);
+                // Lỗi tạm thời (broker chưa phản hồi...) thì thử mãi: park lúc Kafka chết sẽ park cả outbox
+                if (!isRetriable(error) && event.getAttempts() >= maxAttempts) {
+                    event.setParkedAt(now);
+                    log.error("Bỏ qua sự kiện outbox {} tới {} sau {} lần lỗi: {}",
+                            event.getId(), event.getTopic(), event.getAttempts(), message);
+                } else {
+                    log.warn("Gửi sự kiện outbox {} tới {} thất bại (lần {}): {}",
+                            event.getId(), event.getTopic(), event.getAttempts(), message);
+                }
+            }
+            if (!publishedIds.isEmpty()) {
+                outboxEventRepository.markPublished(publishedIds, now);
+            }
+            // Lô đầy và không còn sự kiện phải chờ thì đọc tiếp lô sau ngay
+            return new BatchResult(publishedIds.size(), failedKeys.isEmpty() && events.size() == batchSize);
+        });
+        return result != null ? result : new BatchResult(0, false);
+    }
+
+    private CompletableFuture<Void> send(OutboxEvent event) {
+        try {
+            // Dựng lại object để JsonSerializer gắn đúng header kiểu như khi gửi trực tiếp
+            Object payload = objectMapper.readValue(event.getPayload(), Class.forName(event.getEventType()));
+            return kafkaTemplate.send(event.getTopic(), event.getMessageKey(), payload).thenAccept(result -> {
+            });
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // null nếu gửi thành công, ngược lại là lỗi gốc
+    private Throwable await(CompletableFuture<Void> send) {
+        try {
+            send.get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            return cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause;
+        } catch (TimeoutException e) {
+            // Hủy để sự kiện sau cùng key (đang chờ sự kiện này) không bị gửi
+            send.cancel(false);
+            return new TimeoutException("Quá " + sendTimeoutMs + " ms chưa nhận được ack");
+        }
+    }
+
+    private static boolean isRetriable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RetriableException || cause instanceof TimeoutException
+                    || cause instanceof InterruptedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.order_service.service;
+
+import com.example.order_service.entity.Order;
+import com.example.order_service.enums.OrderStatus;
+import com.example.order_service.enums.RevenueGranularity;
+import com.example.order_service.repository.RevenueRollupRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+
+// Giữ bảng revenue_rollup khớp với các đơn DELIVERED: mỗi lần đơn vào/ra trạng thái giao thành công
+// thì cộng/trừ doanh thu của đơn vào kỳ ngày, tuần, tháng, năm tương ứng trong cùng transaction
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RevenueRollups {
+    final RevenueRollupRepository revenueRollupRepository;
+    final TransactionTemplate transactionTemplate;
+
+    // false tới khi biết bảng đã được backfill; trước đó thay đổi không ghi vì backfill sẽ tính lại từ bảng orders
+    volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnce() {
+        try {
+            boolean backfilled = revenueRollupRepository.existsByGranularity(RevenueGranularity.ALL);
+            // Bật trước khi backfill: đơn đổi trạng thái trong lúc backfill phải chờ khóa đọc của INSERT ... SELECT
+            // rồi mới cộng vào, nên không bị đếm thiếu
+            ready = true;
+            if (!backfilled) {
+                rebuild();
+            }
+        } catch (Exception e) {
+            log.error("Could not backfill revenue rollups", e);
+        }
+    }
+
+    // Tính lại toàn bộ từ bảng orders, dùng khi backfill lần đầu hoặc admin cần đối soát
+    public void rebuild() {
+        transactionTemplate.executeWithoutResult(tx -> {
+            revenueRollupRepository.deleteAllBuckets();
+            int buckets = revenueRollupRepository.backfillDaily()
+                    + revenueRollupRepository.backfillWeekly()
+                    + revenueRollupRepository.backfillMonthly()
+                    + revenueRollupRepository.backfillYearly()
+                    + revenueRollupRepository.backfillAll();
+            log.info("Revenue rollups rebuilt with {} buckets", buckets);
+        });
+    }
+
+    // Gọi trong transaction đổi trạng thái đơn, sau khi trạng thái mới đã được ghi
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void statusChanged(Order order, int oldStatus, int newStatus) {
+        int delivered = OrderStatus.DELIVERED.getCode();
+        if (oldStatus != delivered && newStatus == delivered) {
+            add(order, 1);
+        } else if (oldStatus == delivered && newStatus != delivered) {
+            add(order, -1);
+        }
+    }
+
+    public static boolean affects(int oldStatus, int newStatus) {
+        int delivered = OrderStatus.DELIVERED.getCode();
+        return (oldStatus == delivered) != (newStatus == delivered);
+    }
+
+    private void add(Order order, int sign) {
+        if (!ready || order.getOrder_date() == null) {
+            return;
+        }
+        LocalDate date = order.getOrder_date().toLocalDateTime().toLocalDate();
+        double revenue = order.getTotalPrice() != null ? order.getTotalPrice() : 0;
+        for (RevenueGranularity granularity : RevenueGranularity.values()) {
+            revenueRollupRepository.addToBucket(granularity.name(), granularity.periodOf(date), sign * revenue, sign);
+        }
+    }
+}
@@ -1,15 +1,21 @@
 package com.example.order_service.service;
 
+import com.example.order_service.dto.request.RevenueRequest;
 import com.example.order_service.dto.response.RevenueResponse;
 import com.example.order_service.dto.response.TopCustomerResponse;
 import com.example.order_service.dto.response.TopProductResponse;
+import com.example.order_service.enums.RevenueGranularity;
+import com.example.order_service.exception.AppException;
+import com.example.order_service.exception.ErrorCode;
 import com.example.order_service.repository.OrderItemRepository;
-import com.example.order_service.repository.OrderRepository;
+import com.example.order_service.repository.RevenueRollupRepository;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.stereotype.Service;
 
+import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -17,47 +23,54 @@ import java.util.stream.Collectors;
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
 @RequiredArgsConstructor
 public class RevenueService {
-    OrderRepository orderRepository;
+    private static final int MAX_TOP_LIMIT = 100;
+    private static final LocalDate RANGE_MIN = LocalDate.of(1970, 1, 1);
+    private static final LocalDate RANGE_MAX = LocalDate.of(9999, 1, 1);
+
     OrderItemRepository orderItemRepository;
+    RevenueRollupRepository revenueRollupRepository;
+    RevenueRollups revenueRollups;
+
+    // Đọc từ bảng revenue_rollup (RevenueRollups) thay vì GROUP BY trên toàn bộ bảng orders
     public List<RevenueResponse> getDailyRevenue() {
-        List<Object[]> results = orderRepository.getDailyRevenue();
-        return results.stream()
-                .map(row -> new RevenueResponse(row[0].toString(), (Double) row[1]))
-                .toList();
+        return getRevenue(RevenueGranularity.DAY);
     }
 
     public List<RevenueResponse> getWeeklyRevenue() {
-        List<Object[]> results = orderRepository.getWeeklyRevenue();
-        return results.stream()
-                .map(row -> new RevenueResponse(row[0].toString(), (Double) row[1]))
-                .toList();
+        return getRevenue(RevenueGranularity.WEEK);
     }
 
     public List<RevenueResponse> getMonthlyRevenue() {
-        List<Object[]> results = orderRepository.getMonthlyRevenue();
-        return results.stream()
-                .map(row -> new RevenueResponse(row[0].toString(), (Double) row[1]))
-                .toList();
+        return getRevenue(RevenueGranularity.MONTH);
     }
 
     public List<RevenueResponse> getYearlyRevenue() {
-        List<Object[]> results = orderRepository.getYearlyRevenue();
-        return results.stream()
-                .map(row -> new RevenueResponse(row[0].toString(), (Double) row[1]))
-                .toList();
+        return getRevenue(RevenueGranularity.YEAR);
     }
 
     public Double getAverageMonthlyRevenue() {
-        return orderRepository.getAverageMonthlyRevenue();
+        return revenueRollupRepository.getAverageMonthlyRevenue();
     }
 
-    public List<TopProductResponse> getTopProductsByRevenue(String timeframe, int limit) {
-        List<Object[]> results = orderItemRepository.findTopProductsByRevenue(timeframe);
+    public void rebuildRollups() {
+        revenueRollups.rebuild();
+    }
+
+    private List<RevenueResponse> getRevenue(RevenueGranularity granularity) {
+        return revenueRollupRepository.findBuckets(granularity).stream()
+                .map(bucket -> new RevenueResponse(bucket.getPeriod(), bucket.getTotalRevenue()))
+                .toList();
+    }
+
+    public List<TopProductResponse> getTopProductsByRevenue(String timeframe, LocalDate startDate, LocalDate endDate,
+                                                            int limit) {
+        RevenueRequest range = resolveRange(timeframe, startDate, endDate);
+        List<Object[]> results = orderItemRepository.findTopProductsByRevenue(
+                startOf(range.getStartDate()), startOf(range.getEndDate()), clampLimit(limit));
         return results.stream()
-                .limit(limit) // Apply limit
                 .map(result -> {
                     TopProductResponse dto = new TopProductResponse();
-                    dto.setId((Long) result[0]);
+                    dto.setId(((Number) result[0]).longValue());
                     dto.setName((String) result[1]);
                     dto.setQuantity(((Number) result[2]).longValue());
                     dto.setRevenue(((Number) result[3]).doubleValue());
@@ -65,10 +78,12 @@ public class RevenueService {
                 })
                 .collect(Collectors.toList());
     }
-    public List<TopCustomerResponse> getTopCustomersByValue(String timeframe, int limit) {
-        List<Object[]> results = orderItemRepository.findTopCustomersByValue(timeframe);
+    public List<TopCustomerResponse> getTopCustomersByValue(String timeframe, LocalDate startDate, LocalDate endDate,
+                                                            int limit) {
+        RevenueRequest range = resolveRange(timeframe, startDate, endDate);
+        List<Object[]> results = orderItemRepository.findTopCustomersByValue(
+                startOf(range.getStartDate()), startOf(range.getEndDate()), clampLimit(limit));
         return results.stream()
-                .limit(limit)
                 .map(row -> {
                     TopCustomerResponse dto = new TopCustomerResponse();
                     dto.setUserId((String) row[0]);
@@ -79,4 +94,34 @@ public class RevenueService {
                 })
                 .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+
+    // Khoảng [startDate, endDate) theo ngày. Ngày truyền vào (endDate tính cả ngày đó) được ưu tiên hơn timeframe;
+    // timeframe giữ nghĩa cũ: daily = từ đầu hôm nay, weekly/monthly/yearly = 7/30/365 ngày gần nhất
+    private RevenueRequest resolveRange(String timeframe, LocalDate startDate, LocalDate endDate) {
+        LocalDate today = LocalDate.now();
+        LocalDate from = switch (timeframe == null ? "all" : timeframe) {
+            case "all" -> RANGE_MIN;
+            case "daily" -> today;
+            case "weekly" -> today.minusDays(7);
+            case "monthly" -> today.minusDays(30);
+            case "yearly" -> today.minusDays(365);
+            default -> throw new AppException(ErrorCode.INVALID_TIMEFRAME);
+        };
+        if (startDate != null) {
+            from = startDate;
+        }
+        LocalDate to = endDate != null ? endDate.plusDays(1) : RANGE_MAX;
+        if (!from.isBefore(to)) {
+            throw new AppException(ErrorCode.INVALID_TIMEFRAME);
+        }
+        return new RevenueRequest(from, to);
+    }
+
+    private static Timestamp startOf(LocalDate date) {
+        return Timestamp.valueOf(date.atStartOfDay());
+    }
+
+    private static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_TOP_LIMIT));
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.order_service.service;
+
+import com.example.event.dto.OrderStatusChangedEvent;
+import com.example.order_service.configuration.KafkaProducerConfig;
+import com.example.order_service.entity.OutboxEvent;
+import com.example.order_service.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Chạy relay với Kafka nhúng và H2; không bật @Scheduled nên test tự gọi drain()
+@Slf4j
+@SpringBootTest(classes = OutboxRelayTests.TestConfig.class,
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+                "spring.kafka.producer.key-serializer=org.apache.kafka.common.serialization.StringSerializer",
+                "spring.kafka.producer.value-serializer=org.springframework.kafka.support.serializer.JsonSerializer",
+                "spring.datasource.url=jdbc:h2:mem:outbox;DB_CLOSE_DELAY=-1",
+                "spring.jpa.hibernate.ddl-auto=create-drop",
+                "spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+                "order.outbox.batch-size=100",
+                "order.outbox.max-attempts=2"
+        })
+@EmbeddedKafka(partitions = 3, topics = {OutboxRelayTests.THROUGHPUT_TOPIC, OutboxRelayTests.RECOVERY_TOPIC,
+        OutboxRelayTests.ROLLBACK_TOPIC, OutboxRelayTests.PARKING_TOPIC})
+class OutboxRelayTests {
+    static final String THROUGHPUT_TOPIC = "outbox-throughput";
+    static final String RECOVERY_TOPIC = "outbox-recovery";
+    static final String ROLLBACK_TOPIC = "outbox-rollback";
+    static final String PARKING_TOPIC = "outbox-parking";
+
+    @Configuration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = OutboxEvent.class)
+    @EnableJpaRepositories(basePackageClasses = OutboxEventRepository.class, includeFilters =
+    @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = OutboxEventRepository.class))
+    @Import({OrderOutbox.class, OutboxRelay.class, KafkaProducerConfig.class})
+    static class TestConfig {
+    }
+
+    @Autowired
+    OrderOutbox orderOutbox;
+    @Autowired
+    OutboxRelay outboxRelay;
+    @Autowired
+    OutboxEventRepository outboxEventRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    EmbeddedKafkaBroker embeddedKafka;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    void clearOutbox() {
+        outboxEventRepository.deleteAll();
+    }
+
+    @Test
+    void relaysLargeBacklogInOrderPerOrderId() throws Exception {
+        int orders = 20;
+        int eventsPerOrder = 250;
+        // Mỗi transaction ghi 1 sự kiện cho mỗi đơn, giống nhiều đơn đổi trạng thái xen kẽ nhau
+        for (long sequence = 0; sequence < eventsPerOrder; sequence++) {
+            long current = sequence;
+            transactionTemplate.executeWithoutResult(tx -> {
+                for (int order = 0; order < orders; order++) {
+                    enqueue(THROUGHPUT_TOPIC, "order-" + order, current);
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        int published = outboxRelay.drain();
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        log.info("Outbox relay: {} events in {} ms ({} events/s)", published, elapsedMs,
+                published * 1000L / elapsedMs);
+
+        assertEquals(orders * eventsPerOrder, published);
+        assertEquals(0, outboxEventRepository.countByPublishedAtIsNull());
+        Map<String, List<Long>> received = consume(THROUGHPUT_TOPIC, orders * eventsPerOrder);
+        List<Long> expected = LongStream.range(0, eventsPerOrder).boxed().toList();
+        assertEquals(orders, received.size());
+        received.forEach((key, sequences) -> assertEquals(expected, sequences, key));
+    }
+
+    @Test
+    void redeliversEventsWhenRelayDiesBeforeMarkingThemPublished() throws Exception {
+        int orders = 5;
+        int eventsPerOrder = 10;
+        transactionTemplate.executeWithoutResult(tx -> {
+            for (long sequence = 0; sequence < eventsPerOrder; sequence++) {
+                for (int order = 0; order < orders; order++) {
+                    enqueue(RECOVERY_TOPIC, "order-" + order, sequence);
+                }
+            }
+        });
+
+        // Đã gửi sang Kafka nhưng transaction đánh dấu bị rollback, như service chết trước khi commit
+        transactionTemplate.executeWithoutResult(tx -> {
+            outboxRelay.drain();
+            tx.setRollbackOnly();
+        });
+        assertEquals(orders * eventsPerOrder, outboxEventRepository.countByPublishedAtIsNull());
+
+        // Lần chạy sau (sau khi khởi động lại) gửi lại toàn bộ, theo đúng thứ tự
+        assertEquals(orders * eventsPerOrder, outboxRelay.drain());
+        assertEquals(0, outboxEventRepository.countByPublishedAtIsNull());
+
+        Map<String, List<Long>> received = consume(RECOVERY_TOPIC, 2 * orders * eventsPerOrder);
+        List<Long> once = LongStream.range(0, eventsPerOrder).boxed().toList();
+        List<Long> twice = new ArrayList<>(once);
+        twice.addAll(once);
+        assertEquals(orders, received.size());
+        received.forEach((key, sequences) -> assertEquals(twice, sequences, key));
+    }
+
+    @Test
+    void rolledBackOrderTransactionPublishesNothing() throws Exception {
+        transactionTemplate.executeWithoutResult(tx -> {
+            enqueue(ROLLBACK_TOPIC, "order-rolled-back", 0);
+            tx.setRollbackOnly();
+        });
+        transactionTemplate.executeWithoutResult(tx -> enqueue(ROLLBACK_TOPIC, "order-committed", 0));
+
+        assertEquals(1, outboxRelay.drain());
+        Map<String, List<Long>> received = consume(ROLLBACK_TOPIC, 1);
+        assertEquals(Set.of("order-committed"), received.keySet());
+    }
+
+    @Test
+    void parksUndeliverableEventWithoutSendingLaterEventsOfItsKeyFirst() throws Exception {
+        transactionTemplate.executeWithoutResult(tx -> {
+            enqueue(PARKING_TOPIC, "order-ok", 0);
+            // Payload không dựng lại được (class không tồn tại), lỗi không tự khỏi
+            outboxEventRepository.save(OutboxEvent.builder()
+                    .topic(PARKING_TOPIC)
+                    .messageKey("order-poison")
+                    .eventType("com.example.event.dto.RemovedEvent")
+                    .payload("{}")
+                    .build());
+            enqueue(PARKING_TOPIC, "order-poison", 1);
+        });
+
+        // Lần 1: sự kiện lỗi chưa tới max-attempts, sự kiện sau cùng key không được gửi
+        assertEquals(1, outboxRelay.drain());
+        assertEquals(2, outboxEventRepository.countByPublishedAtIsNull());
+        // Lần 2: sự kiện lỗi bị park, không còn chặn hàng đợi
+        assertEquals(0, outboxRelay.drain());
+        assertEquals(1, outboxEventRepository.countByParkedAtIsNotNull());
+        assertEquals(1, outboxRelay.drain());
+
+        Map<String, List<Long>> received = consume(PARKING_TOPIC, 2);
+        assertEquals(Map.of("order-ok", List.of(0L), "order-poison", List.of(1L)), received);
+    }
+
+    private void enqueue(String topic, String orderId, long sequence) {
+        orderOutbox.enqueue(topic, orderId, OrderStatusChangedEvent.builder()
+                .orderId(orderId)
+                .changedAt(sequence)
+                .build());
+    }
+
+    // Đọc đúng expected bản ghi (chờ thêm 1 nhịp để phát hiện bản ghi thừa), nhóm số thứ tự theo key
+    private Map<String, List<Long>> consume(String topic, int expected) throws Exception {
+        Map<String, Object> props = KafkaTestUtils.consumerProps(topic + "-verifier", "false", embeddedKafka);
+        Map<String, List<Long>> received = new TreeMap<>();
+        try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(props,
+                new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+            embeddedKafka.consumeFromAnEmbeddedTopic(consumer, topic);
+            int count = 0;
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (count < expected && System.currentTimeMillis() < deadline) {
+                for (ConsumerRecord<String, String> record : KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(5))) {
+                    OrderStatusChangedEvent event = objectMapper.readValue(record.value(), OrderStatusChangedEvent.class);
+                    received.computeIfAbsent(record.key(), k -> new ArrayList<>()).add(event.getChangedAt());
+                    count++;
+                }
+            }
+            for (ConsumerRecord<String, String> record : KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(1))) {
+                received.computeIfAbsent(record.key(), k -> new ArrayList<>()).add(-1L);
+                count++;
+            }
+            assertEquals(expected, count);
+        }
+        return received;
+    }
+}
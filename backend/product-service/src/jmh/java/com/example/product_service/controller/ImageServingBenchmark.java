@@ -0,0 +1,181 @@
+package com.example.product_service.controller;
+
+import com.example.product_service.service.ImageStorageService;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Tải ảnh sản phẩm qua HTTP trên Tomcat nhúng (cùng connector NIO như Spring Boot):
+// resource handler cũ của WebConfig (không header cache, body đi qua heap) so với ImageController
+// (sendfile, ETag, 304). Ngoài thông lượng, mỗi iteration in ra CPU của các thread Tomcat trên 1 request
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class ImageServingBenchmark {
+    private static final String SAMPLE_IMAGE = "static/images/tomatoes-1280859_1280.jpg";
+
+    Path uploadDir;
+    Tomcat tomcat;
+    HttpClient client;
+    HttpRequest legacyRequest;
+    HttpRequest imageRequest;
+    HttpRequest revalidateRequest;
+    final LongAdder requests = new LongAdder();
+    long serverCpuAtStart;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        uploadDir = Files.createTempDirectory("bench-images");
+        String fileName = copySampleImage();
+
+        ImageStorageService imageStorageService = new ImageStorageService(null, null, null);
+        Field uploadDirField = ReflectionUtils.findField(ImageStorageService.class, "uploadDir");
+        ReflectionUtils.makeAccessible(uploadDirField);
+        ReflectionUtils.setField(uploadDirField, imageStorageService, uploadDir.toString());
+        ImageController imageController = new ImageController(imageStorageService);
+
+        // Cấu hình như WebConfig trước đây: addResourceHandler("/image-product/**") không đặt cache
+        ResourceHttpRequestHandler legacyHandler = new ResourceHttpRequestHandler();
+        legacyHandler.setLocations(List.of(new FileSystemResource(uploadDir + "/")));
+        legacyHandler.afterPropertiesSet();
+
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("bench-tomcat").toString());
+        tomcat.setPort(0);
+        tomcat.getConnector();
+        Context context = tomcat.addContext("", null);
+        Tomcat.addServlet(context, "legacy", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                    throws ServletException, IOException {
+                request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE,
+                        request.getPathInfo().substring(1));
+                legacyHandler.handleRequest(request, response);
+            }
+        });
+        context.addServletMappingDecoded("/legacy/*", "legacy");
+        Tomcat.addServlet(context, "images", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                imageController.getImage(request.getPathInfo().substring(1), request, response);
+            }
+        });
+        context.addServletMappingDecoded("/image-product/*", "images");
+        tomcat.start();
+
+        String baseUrl = "http://localhost:" + tomcat.getConnector().getLocalPort();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        legacyRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/legacy/" + fileName)).build();
+        imageRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/image-product/" + fileName)).build();
+        revalidateRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/image-product/" + fileName))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + fileName + "\"")
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws LifecycleException, IOException {
+        tomcat.stop();
+        tomcat.destroy();
+        FileSystemUtils.deleteRecursively(uploadDir);
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        requests.reset();
+        serverCpuAtStart = serverCpuNanos();
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        long count = requests.sum();
+        if (count > 0) {
+            System.out.printf("%nserver CPU: %.1f µs/request (%d requests)%n",
+                    (serverCpuNanos() - serverCpuAtStart) / 1000.0 / count, count);
+        }
+    }
+
+    // Handler cũ: trình duyệt tải lại toàn bộ ảnh mỗi lần hiển thị danh sách
+    @Benchmark
+    public int legacyResourceHandler() throws Exception {
+        return send(legacyRequest);
+    }
+
+    @Benchmark
+    public int imageController() throws Exception {
+        return send(imageRequest);
+    }
+
+    // Trình duyệt còn bản cache nhưng vẫn hỏi lại (vd. reload): 304 không có body
+    @Benchmark
+    public int imageControllerNotModified() throws Exception {
+        return send(revalidateRequest);
+    }
+
+    private int send(HttpRequest request) throws Exception {
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        requests.increment();
+        return response.statusCode();
+    }
+
+    // Tổng CPU của các thread connector Tomcat (worker, poller, acceptor), không tính thread của client
+    private static long serverCpuNanos() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith("http-nio-")) {
+                long cpu = threads.getThreadCpuTime(info.getThreadId());
+                if (cpu > 0) {
+                    total += cpu;
+                }
+            }
+        }
+        return total;
+    }
+
+    // Lưu ảnh mẫu với tên theo SHA-256 như ImageStorageService.store
+    private String copySampleImage() throws Exception {
+        byte[] content;
+        try (InputStream in = ImageServingBenchmark.class.getClassLoader().getResourceAsStream(SAMPLE_IMAGE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing sample image " + SAMPLE_IMAGE);
+            }
+            content = in.readAllBytes();
+        }
+        String fileName = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)) + ".jpg";
+        Files.write(uploadDir.resolve(fileName), content);
+        return fileName;
+    }
+}
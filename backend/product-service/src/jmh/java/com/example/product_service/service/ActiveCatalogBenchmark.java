@@ -0,0 +1,78 @@
+package com.example.product_service.service;
+
+import com.example.product_service.mapper.ProductMapperImpl;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Cập nhật snapshot ActiveCatalog sau khi 1 sản phẩm thay đổi, so với build lại toàn bộ.
+// stockChange đi đường thay JSON tại chỗ (khóa sắp xếp không đổi), priceChange phải trộn lại các mảng thứ tự.
+// Cả 2 đều gồm 1 câu UPDATE và câu nạp lại sản phẩm trên H2
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ActiveCatalogBenchmark {
+    @Param({"1000", "10000"})
+    int productCount;
+
+    BenchmarkDatabase database;
+    EntityManager entityManager;
+    ActiveCatalog activeCatalog;
+    List<Long> changedIds;
+    long productId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(productCount);
+        entityManager = database.entityManagerFactory.createEntityManager();
+        // Không có Redis: applyRemoteChanges không publish
+        activeCatalog = new ActiveCatalog(database.productRepository, new ProductMapperImpl(),
+                Jackson2ObjectMapperBuilder.json().build(), new CatalogVersions(), null);
+        activeCatalog.rebuild();
+        // Sản phẩm đang bán ở giữa danh mục
+        List<Long> activeIds = database.productRepository.findActiveIdsAfter(0, PageRequest.of(0, productCount));
+        productId = activeIds.get(activeIds.size() / 2);
+        changedIds = List.of(productId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManager.close();
+        database.close();
+    }
+
+    @Benchmark
+    public long stockChange() {
+        execute("UPDATE WeightProduct wp SET wp.stock = wp.stock + 1 WHERE wp.product.id_product = :productId");
+        activeCatalog.applyRemoteChanges(changedIds);
+        return activeCatalog.getVersion();
+    }
+
+    @Benchmark
+    public long priceChange() {
+        execute("UPDATE Product p SET p.price = p.price + 1000 WHERE p.id_product = :productId");
+        activeCatalog.applyRemoteChanges(changedIds);
+        return activeCatalog.getVersion();
+    }
+
+    @Benchmark
+    public long rebuild() {
+        activeCatalog.rebuild();
+        return activeCatalog.getVersion();
+    }
+
+    private void execute(String update) {
+        entityManager.getTransaction().begin();
+        entityManager.createQuery(update)
+                .setParameter("productId", productId)
+                .executeUpdate();
+        entityManager.getTransaction().commit();
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.product_service.service;
+
+import com.example.product_service.entity.Category;
+import com.example.product_service.entity.Product;
+import com.example.product_service.entity.WeightProduct;
+import com.example.product_service.entity.WeightType;
+import com.example.product_service.mapper.ProductMapperImpl;
+import com.example.product_service.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+// H2 trong bộ nhớ với schema sinh từ entity và dữ liệu giả lập cố định (seed cố định để các lần chạy so sánh được)
+final class BenchmarkDatabase implements AutoCloseable {
+    static final double[] WEIGHTS = {0.5, 1, 2, 5};
+    static final String[] BRANDS = {"Dalat Farm", "Organica", "Green Valley", "Mekong Fresh"};
+    static final String[] ORIGINS = {"Lâm Đồng", "Cần Thơ", "Sơn La", "Đắk Lắk"};
+    private static final int CATEGORY_COUNT = 8;
+    private static final int FLUSH_SIZE = 500;
+
+    final EntityManagerFactory entityManagerFactory;
+    final ProductRepository productRepository;
+    final ProductService productService;
+    final List<Long> productIds = new ArrayList<>();
+
+    BenchmarkDatabase(int productCount) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=MySQL", "sa", "");
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setPackagesToScan("com.example.product_service.entity");
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setJpaPropertyMap(Map.of(
+                "hibernate.hbm2ddl.auto", "create",
+                "hibernate.physical_naming_strategy",
+                "org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy",
+                "hibernate.default_batch_fetch_size", "100"));
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+        // Ngoài transaction, shared EntityManager mở/đóng EntityManager theo từng truy vấn giống repository thật
+        EntityManager entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        productRepository = new JpaRepositoryFactory(entityManager).getRepository(ProductRepository.class);
+        // checkStock và getListProductResponses chỉ dùng repository + mapper
+        productService = new ProductService(productRepository, new ProductMapperImpl(),
+                null, null, null, null, null, null, null, null, null, null);
+        seed(productCount);
+    }
+
+    private void seed(int productCount) {
+        Random random = new Random(42);
+        EntityManager session = entityManagerFactory.createEntityManager();
+        try {
+            session.getTransaction().begin();
+            List<Category> categories = new ArrayList<>();
+            for (int i = 1; i <= CATEGORY_COUNT; i++) {
+                Category category = Category.builder().name("Danh mục " + i).build();
+                session.persist(category);
+                categories.add(category);
+            }
+            List<WeightType> weightTypes = new ArrayList<>();
+            for (double weight : WEIGHTS) {
+                WeightType weightType = WeightType.builder().unit("kg").value(weight).build();
+                session.persist(weightType);
+                weightTypes.add(weightType);
+            }
+            for (int i = 1; i <= productCount; i++) {
+                Product product = Product.builder()
+                        .name("Sản phẩm " + i)
+                        .price(10_000d + random.nextInt(500) * 1_000d)
+                        .oldPrice(null)
+                        .description("Mô tả sản phẩm " + i)
+                        .category(session.getReference(Category.class,
+                                categories.get(random.nextInt(categories.size())).getId_category()))
+                        .image(String.format("%064x", i) + ".jpg")
+                        .organic(random.nextBoolean())
+                        .origin(ORIGINS[random.nextInt(ORIGINS.length)])
+                        .packaging("Túi")
+                        .brand(BRANDS[random.nextInt(BRANDS.length)])
+                        .howToUse("Dùng trực tiếp")
+                        .howToPreserve("Bảo quản ngăn mát")
+                        .isActive(random.nextInt(10) > 0)
+                        .build();
+                Set<WeightProduct> weightProducts = new HashSet<>();
+                for (WeightType weightType : weightTypes) {
+                    weightProducts.add(WeightProduct.builder()
+                            .product(product)
+                            .weightType(session.getReference(WeightType.class, weightType.getId()))
+                            .stock(random.nextInt(50))
+                            .build());
+                }
+                product.setWeightProducts(weightProducts);
+                session.persist(product);
+                productIds.add(product.getId_product());
+                if (i % FLUSH_SIZE == 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+            session.getTransaction().commit();
+        } finally {
+            session.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        entityManagerFactory.close();
+    }
+}
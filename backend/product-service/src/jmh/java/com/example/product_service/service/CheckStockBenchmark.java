@@ -0,0 +1,81 @@
+package com.example.product_service.service;
+
+import com.example.product_service.dto.request.OrderItemRequest;
+import com.example.product_service.entity.Product;
+import com.example.product_service.entity.WeightProduct;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Kiểm tra tồn kho của 1 đơn hàng theo số dòng: 1 query fetch join (checkStock hiện tại) so với
+// cách cũ findById từng dòng rồi duyệt tập weightProducts lazy
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckStockBenchmark {
+    private static final int PRODUCT_COUNT = 10_000;
+
+    @Param({"1", "10", "100"})
+    int lines;
+
+    BenchmarkDatabase database;
+    List<OrderItemRequest> order;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(PRODUCT_COUNT);
+        Random random = new Random(11);
+        order = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            Long productId = database.productIds.get(random.nextInt(database.productIds.size()));
+            OrderItemRequest item = new OrderItemRequest();
+            item.setProductCode(String.valueOf(productId));
+            item.setName("Sản phẩm " + productId);
+            item.setWeight(BenchmarkDatabase.WEIGHTS[random.nextInt(BenchmarkDatabase.WEIGHTS.length)]);
+            item.setQuantity(1 + random.nextInt(30));
+            order.add(item);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<String> batchedCheckStock() {
+        return database.productService.checkStock(order);
+    }
+
+    @Benchmark
+    public List<String> perLineCheckStock() {
+        List<String> outOfStockProducts = new ArrayList<>();
+        EntityManager entityManager = database.entityManagerFactory.createEntityManager();
+        try {
+            for (OrderItemRequest item : order) {
+                Product product = entityManager.find(Product.class, Long.valueOf(item.getProductCode()));
+                if (product == null) {
+                    outOfStockProducts.add("Sản phẩm có mã " + item.getProductCode() + " không tồn tại");
+                    continue;
+                }
+                for (WeightProduct weightProduct : product.getWeightProducts()) {
+                    if (weightProduct.getWeightType().getValue() == item.getWeight()
+                            && weightProduct.getStock() < item.getQuantity()) {
+                        outOfStockProducts.add(product.getName() +
+                                " (" + weightProduct.getWeightType().getValue() + "kg)");
+                    }
+                }
+            }
+        } finally {
+            entityManager.close();
+        }
+        return outOfStockProducts;
+    }
+}
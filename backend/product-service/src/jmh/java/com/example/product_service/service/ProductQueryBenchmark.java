@@ -0,0 +1,94 @@
+package com.example.product_service.service;
+
+import com.example.product_service.dto.request.FilterRequest;
+import com.example.product_service.dto.request.OrderItemRequest;
+import com.example.product_service.entity.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Dựng truy vấn bộ lọc (Specification -> Criteria -> HQL) và kiểm tra tồn kho trên H2
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductQueryBenchmark {
+    @Param({"1000", "10000"})
+    int productCount;
+
+    @Param({"5", "20"})
+    int orderItems;
+
+    BenchmarkDatabase database;
+    // EntityManager riêng để createQuery không mở EntityManager mới mỗi lần như shared proxy
+    EntityManager entityManager;
+    FilterRequest filter;
+    List<OrderItemRequest> order;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(productCount);
+        entityManager = database.entityManagerFactory.createEntityManager();
+        filter = new FilterRequest();
+        filter.setCategoryId(3L);
+        filter.setOrganic(true);
+        filter.setMinPrice(50_000d);
+        filter.setMaxPrice(300_000d);
+        filter.setBrand("Farm");
+        filter.setQuery("phẩm 1");
+
+        Random random = new Random(7);
+        order = new ArrayList<>(orderItems);
+        for (int i = 0; i < orderItems; i++) {
+            Long productId = database.productIds.get(random.nextInt(database.productIds.size()));
+            OrderItemRequest item = new OrderItemRequest();
+            item.setProductCode(String.valueOf(productId));
+            item.setName("Sản phẩm " + productId);
+            item.setWeight(BenchmarkDatabase.WEIGHTS[random.nextInt(BenchmarkDatabase.WEIGHTS.length)]);
+            item.setQuantity(1 + random.nextInt(30));
+            order.add(item);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManager.close();
+        database.close();
+    }
+
+    @Benchmark
+    public Predicate buildFilterPredicate() {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Product> query = criteriaBuilder.createQuery(Product.class);
+        Root<Product> root = query.from(Product.class);
+        Specification<Product> spec = database.productService.filterProductsForUser(filter);
+        return spec.toPredicate(root, query, criteriaBuilder);
+    }
+
+    // Gồm cả bước Hibernate dịch Criteria thành SQL, chưa thực thi truy vấn
+    @Benchmark
+    public TypedQuery<Product> createFilterQuery() {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Product> query = criteriaBuilder.createQuery(Product.class);
+        Root<Product> root = query.from(Product.class);
+        query.where(database.productService.filterProductsForUser(filter).toPredicate(root, query, criteriaBuilder));
+        return entityManager.createQuery(query);
+    }
+
+    @Benchmark
+    public List<String> checkStock() {
+        return database.productService.checkStock(order);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.product_service.service;
+
+import com.example.product_service.dto.response.PageResponse;
+import com.example.product_service.dto.response.ProductResponse;
+import com.example.product_service.entity.Product;
+import com.example.product_service.mapper.ProductMapper;
+import com.example.product_service.mapper.ProductMapperImpl;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Đường đọc danh sách sản phẩm: entity -> DTO -> JSON, trên 1 trang sản phẩm đã nạp sẵn (không tính DB)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductReadBenchmark {
+    @Param({"10", "50"})
+    int pageSize;
+
+    BenchmarkDatabase database;
+    ProductMapper productMapper;
+    ObjectMapper objectMapper;
+    Product product;
+    Page<Product> productPage;
+    PageResponse<ProductResponse> responsePage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(pageSize);
+        productMapper = new ProductMapperImpl();
+        // Cùng cấu hình mặc định với ObjectMapper của Spring Boot
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        List<Product> products = database.productRepository.findAllWithWeightProductsByIdIn(database.productIds)
+                .stream()
+                .sorted(Comparator.comparingLong(Product::getId_product))
+                .toList();
+        product = products.get(0);
+        productPage = new PageImpl<>(products, PageRequest.of(0, pageSize), products.size() * 20L);
+        responsePage = database.productService.getListProductResponses(productPage, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public ProductResponse toProductResponse() {
+        return productMapper.toProductResponse(product);
+    }
+
+    @Benchmark
+    public PageResponse<ProductResponse> getListProductResponses() {
+        return database.productService.getListProductResponses(productPage, 1);
+    }
+
+    @Benchmark
+    public byte[] serializePageResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(responsePage);
+    }
+}
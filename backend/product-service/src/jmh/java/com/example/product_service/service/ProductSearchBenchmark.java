@@ -0,0 +1,74 @@
+package com.example.product_service.service;
+
+import com.example.product_service.entity.Product;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Tìm kiếm sản phẩm bằng chỉ mục trong bộ nhớ so với truy vấn LIKE cũ trên H2 (cùng dữ liệu seed).
+// legacySearch chạy lại truy vấn LIKE '%keyword%' trên 4 cột cùng câu COUNT của trang đầu
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductSearchBenchmark {
+    private static final int PAGE_SIZE = 10;
+    private static final String LEGACY_SEARCH = "SELECT p FROM Product p WHERE " +
+            "LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+            "LOWER(p.description) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+            "LOWER(p.brand) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+            "LOWER(p.category.name) LIKE LOWER(CONCAT('%', :keyword, '%'))";
+    private static final String LEGACY_COUNT = "SELECT COUNT(p) FROM Product p WHERE " +
+            "LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+            "LOWER(p.description) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+            "LOWER(p.brand) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+            "LOWER(p.category.name) LIKE LOWER(CONCAT('%', :keyword, '%'))";
+
+    @Param({"1000", "10000"})
+    int productCount;
+
+    // Từ phổ biến (khớp mọi sản phẩm), thương hiệu, và tên cụ thể
+    @Param({"phẩm", "Organica", "Sản phẩm 12"})
+    String keyword;
+
+    BenchmarkDatabase database;
+    EntityManager entityManager;
+    ProductSearchIndex productSearchIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(productCount);
+        entityManager = database.entityManagerFactory.createEntityManager();
+        productSearchIndex = new ProductSearchIndex(database.productRepository);
+        productSearchIndex.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManager.close();
+        database.close();
+    }
+
+    @Benchmark
+    public ProductSearchIndex.SearchResult indexSearch() {
+        return productSearchIndex.search(keyword, true, 1, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Product> legacySearch() {
+        entityManager.createQuery(LEGACY_COUNT, Long.class)
+                .setParameter("keyword", keyword)
+                .getSingleResult();
+        List<Product> products = entityManager.createQuery(LEGACY_SEARCH, Product.class)
+                .setParameter("keyword", keyword)
+                .setMaxResults(PAGE_SIZE)
+                .getResultList();
+        // Không giữ entity giữa các lần gọi
+        entityManager.clear();
+        return products;
+    }
+}
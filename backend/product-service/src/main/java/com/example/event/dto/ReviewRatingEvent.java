@@ -0,0 +1,24 @@
+package com.example.event.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Tổng hợp đánh giá hiện tại của 1 sản phẩm (không phải phần chênh lệch) nên nhận lại nhiều lần vẫn đúng;
+// asOf là thời điểm review-service đọc tổng hợp, bản cũ hơn bản đã lưu sẽ bị bỏ qua
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReviewRatingEvent {
+    private long productId;
+    private long ratingCount;
+    private long ratingSum;
+    private long oneStar;
+    private long twoStar;
+    private long threeStar;
+    private long fourStar;
+    private long fiveStar;
+    private long asOf;
+}
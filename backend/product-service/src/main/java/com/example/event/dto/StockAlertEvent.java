@@ -0,0 +1,22 @@
+package com.example.event.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Tồn kho của 1 khối lượng sản phẩm vượt ngưỡng: level là LOW_STOCK, OUT_OF_STOCK hoặc IN_STOCK (đã nhập lại hàng)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockAlertEvent {
+    private long productId;
+    private String productName;
+    private long weightProductId;
+    private double weight;
+    private int stock;
+    private int threshold;
+    private String level;
+    private long occurredAt;
+}
@@ -13,5 +13,6 @@ import java.util.List;
 @Builder
 public class UpdateStockRequest {
     List<ItemUpdateStock> items;
-
+    // Khóa chống trùng: message gửi lại (outbox at-least-once) có cùng eventId thì chỉ được áp dụng 1 lần
+    String eventId;
 }
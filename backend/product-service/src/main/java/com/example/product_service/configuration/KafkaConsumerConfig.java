@@ -0,0 +1,20 @@
+package com.example.product_service.configuration;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+
+@Configuration
+public class KafkaConsumerConfig {
+    // Listener lỗi (DB tạm thời không dùng được...) thì thử lại message đó với backoff tăng dần
+    // thay vì 10 lần liên tiếp rồi bỏ qua như mặc định
+    @Bean
+    public DefaultErrorHandler kafkaErrorHandler() {
+        ExponentialBackOffWithMaxRetries backOff = new ExponentialBackOffWithMaxRetries(10);
+        backOff.setInitialInterval(500);
+        backOff.setMultiplier(2);
+        backOff.setMaxInterval(60_000);
+        return new DefaultErrorHandler(backOff);
+    }
+}
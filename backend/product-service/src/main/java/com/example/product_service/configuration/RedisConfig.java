@@ -1,15 +1,17 @@
 package com.example.product_service.configuration;
 
-import org.springframework.cache.annotation.EnableCaching;
+import com.example.product_service.service.CatalogSync;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
-@EnableCaching
 public class RedisConfig {
 
     @Bean
@@ -22,5 +24,17 @@ public class RedisConfig {
         return template;
     }
 
-}
+    // Lắng nghe thông báo thay đổi sản phẩm từ các instance khác để cập nhật snapshot/chỉ mục trong bộ nhớ
+    @Bean
+    public RedisMessageListenerContainer catalogListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                  RedisTemplate<String, Object> redisTemplate,
+                                                                  CatalogSync catalogSync) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener((message, pattern) -> catalogSync.onMessage(
+                        (String) redisTemplate.getValueSerializer().deserialize(message.getBody())),
+                new ChannelTopic(CatalogSync.CHANNEL));
+        return container;
+    }
 
+}
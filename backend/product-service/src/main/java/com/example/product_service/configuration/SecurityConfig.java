@@ -24,7 +24,7 @@ public class SecurityConfig {
     @Autowired
     private CustomJwtDecoder customJwtDecoder;
 
-    private final String[] Authenticated_ENDPOINTS = {"/admin/**"};
+    private final String[] Authenticated_ENDPOINTS = {"/admin/**", "/stock/**"};
 
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity httpSecurity) throws Exception {
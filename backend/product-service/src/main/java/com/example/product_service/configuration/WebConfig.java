@@ -1,15 +0,0 @@
-package com.example.product_service.configuration;
-
-import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
-
-@Configuration
-public class WebConfig implements WebMvcConfigurer {
-    @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry.addResourceHandler("/image-product/**")
-                .addResourceLocations("file:C:/agriculture/uploads/image-product/"); // Windows
-    }
-}
-
@@ -1,30 +1,47 @@
 package com.example.product_service.controller;
 
+import com.example.event.dto.ItemUpdateStock;
+import com.example.event.dto.ReviewRatingEvent;
+import com.example.event.dto.StockAlertEvent;
+import com.example.event.dto.StockReservationConfirmedEvent;
 import com.example.event.dto.UpdateStockRequest;
 import com.example.product_service.dto.request.FilterRequest;
 import com.example.product_service.dto.request.OrderItemRequest;
 import com.example.product_service.dto.request.ProductRequest;
 import com.example.product_service.dto.response.ApiResponse;
+import com.example.product_service.dto.response.FacetCountResponse;
 import com.example.product_service.dto.response.PageResponse;
+import com.example.product_service.dto.response.ProductImportResponse;
+import com.example.product_service.dto.response.ProductJson;
 import com.example.product_service.dto.response.ProductResponse;
 import com.example.product_service.exception.AppException;
 import com.example.product_service.exception.ErrorCode;
+import com.example.product_service.service.ProductImportService;
 import com.example.product_service.service.ProductService;
+import com.example.product_service.service.RatingSummaries;
+import com.example.product_service.service.StockReservationService;
+import com.example.product_service.service.StockWatch;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.coyote.Request;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -35,15 +52,25 @@ import java.util.List;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class AdminProductController {
      ProductService productService;
+     StockReservationService stockReservationService;
+     ProductImportService productImportService;
+     StockWatch stockWatch;
+     RatingSummaries ratingSummaries;
     // Get all products
     @GetMapping
     @CrossOrigin(origins = "http://localhost:3000,http://localhost:3001,null", allowCredentials = "true")
     public ApiResponse<PageResponse<ProductResponse>> getAllProducts(
             @RequestParam(required = false, defaultValue = "1") Integer page,
-            @RequestParam(required = false, defaultValue = "10") Integer size
+            @RequestParam(required = false, defaultValue = "10") Integer size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "false") boolean withCount
     ){
+        Paging.check(page, size);
+        PageResponse<ProductResponse> products = cursor != null
+                ? productService.getAllProductsByCursor(cursor, size, withCount)
+                : productService.getAllProducts(page, size);
         return ApiResponse.<PageResponse<ProductResponse>>builder()
-                .data(productService.getAllProducts(page, size))
+                .data(products)
                 .build();
     }
     // Get product by id
@@ -60,8 +87,13 @@ public class AdminProductController {
     public ApiResponse<PageResponse<ProductResponse>>
     getProductsByCategoryId(@PathVariable Long categoryId,
                             @RequestParam(required = false, defaultValue = "1") Integer page,
-                            @RequestParam(required = false, defaultValue = "10") Integer size) {
-        PageResponse<ProductResponse> products = productService.getProductsByCategory(categoryId,page,size);
+                            @RequestParam(required = false, defaultValue = "10") Integer size,
+                            @RequestParam(required = false) String cursor,
+                            @RequestParam(required = false, defaultValue = "false") boolean withCount) {
+        Paging.check(page, size);
+        PageResponse<ProductResponse> products = cursor != null
+                ? productService.getProductsByCategoryByCursor(categoryId, cursor, size, withCount)
+                : productService.getProductsByCategory(categoryId,page,size);
         return ApiResponse.<PageResponse<ProductResponse>>builder()
                .data(products)
                .build();
@@ -73,9 +105,6 @@ public class AdminProductController {
             @RequestPart("file") MultipartFile file) throws AppException {
 
         try {
-            String imagePath = FileUtils.saveImage(file);
-            request.setImage(imagePath);
-
             ProductResponse response = productService.createProduct(request,file);
 
             return ApiResponse.<ProductResponse>builder()
@@ -93,9 +122,6 @@ public class AdminProductController {
             @RequestPart("request") @Valid ProductRequest request,
             @RequestPart(value = "file", required = false) MultipartFile file) {
 
-        if (file != null) {
-            request.setImage(FileUtils.saveImage(file));
-        }
         ProductResponse product = productService.updateProduct(id, request,file);
         if (product == null) throw new AppException(ErrorCode.PRODUCT_NOT_FOUND);
 
@@ -106,7 +132,37 @@ public class AdminProductController {
     //update stock
     @KafkaListener(topics = "update-stock")
     public void updateStock(@Payload UpdateStockRequest request) {
-        productService.updateStock(request);
+        List<ItemUpdateStock> rejectedItems = productService.updateStock(request);
+        if (!rejectedItems.isEmpty()) {
+            log.warn("Stock update rejected for items {}", rejectedItems);
+        }
+    }
+
+    // Cập nhật tổng hợp đánh giá khi review được tạo/sửa/xóa
+    @KafkaListener(topics = "review-rating")
+    public void updateRating(@Payload ReviewRatingEvent event) {
+        productService.applyRatingSummary(event);
+    }
+
+    // Tính lại tổng hợp đánh giá của mọi sản phẩm từ review-service
+    @PostMapping("/rating/rebuild")
+    public ApiResponse<Void> rebuildRatings() {
+        ratingSummaries.rebuild();
+        return ApiResponse.<Void>builder().build();
+    }
+
+    // order-service ghi sự kiện vào outbox cùng transaction tạo đơn; lỗi DB thì ném ra để listener thử lại
+    @KafkaListener(topics = "stock-reservation-confirmed")
+    public void confirmReservedStock(@Payload StockReservationConfirmedEvent event) {
+        try {
+            stockReservationService.confirm(event.getReservationId());
+        } catch (AppException e) {
+            // Không tìm thấy lượt giữ, hoặc lượt đã hết hạn và không còn đủ hàng: thử lại cũng không khác.
+            // Kho của đơn chưa từng bị trừ nên lần hoàn kho sau này của đơn phải bị bỏ qua
+            log.error("Could not confirm stock reservation {} of order {}: {}",
+                    event.getReservationId(), event.getOrderId(), e.getErrorCode());
+            stockReservationService.skipRestore(event.getOrderId());
+        }
     }
 
     @PostMapping("/stock/check")
@@ -118,6 +174,20 @@ public class AdminProductController {
                .build()  ;
     }
 
+    // Các khối lượng đang sắp hết / hết hàng
+    @GetMapping("/stock/alerts")
+    public ApiResponse<List<StockAlertEvent>> getStockAlerts() {
+        return ApiResponse.<List<StockAlertEvent>>builder()
+                .data(stockWatch.getCurrentAlerts())
+                .build();
+    }
+
+    // Luồng SSE: sự kiện "snapshot" khi kết nối, sau đó "stock-alert" mỗi khi tồn kho vượt ngưỡng
+    @GetMapping(value = "/stock/alerts/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStockAlerts() {
+        return stockWatch.subscribe();
+    }
+
     // delete product
     @DeleteMapping("/{id}")
     public ApiResponse<Void> deleteProduct(@PathVariable Long id) {
@@ -138,27 +208,59 @@ public class AdminProductController {
     }
     @GetMapping("/search")
     public ApiResponse<PageResponse<ProductResponse>> searchProducts(
-            @RequestParam String keyword,
+            @RequestParam(required = false) String keyword,
             @RequestParam(required = false, defaultValue = "1") Integer page,
             @RequestParam(required = false, defaultValue = "10") Integer size) {
+        Paging.check(page, size);
         PageResponse<ProductResponse> products =
                 productService.searchProducts(keyword, page, size);
         return ApiResponse.<PageResponse<ProductResponse>>builder()
                 .data(products)
                 .build() ;
     }
+    // Nhập hàng loạt sản phẩm từ CSV/NDJSON, đọc theo luồng từ body request
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ApiResponse<ProductImportResponse> importProducts(HttpServletRequest request) throws IOException {
+        ProductImportService.Format format = request.getContentType().startsWith("text/csv")
+                ? ProductImportService.Format.CSV
+                : ProductImportService.Format.NDJSON;
+        return ApiResponse.<ProductImportResponse>builder()
+                .data(productImportService.importProducts(request.getInputStream(), format))
+                .build();
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+            @RequestParam(required = false, defaultValue = "csv") String format) {
+        boolean csv = !"ndjson".equalsIgnoreCase(format);
+        StreamingResponseBody body = out -> productImportService.exportProducts(out,
+                csv ? ProductImportService.Format.CSV : ProductImportService.Format.NDJSON);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(csv ? "text/csv" : "application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"products." + (csv ? "csv" : "ndjson") + "\"")
+                .body(body);
+    }
     // Get products by filter
     @GetMapping("/filter")
-    public ApiResponse<PageResponse<ProductResponse>> filterProducts(
+    public ApiResponse<PageResponse<ProductJson>> filterProducts(
             FilterRequest filter,
             @RequestParam(required = false, defaultValue = "1") Integer page,
             @RequestParam(required = false, defaultValue = "10") Integer size) throws JsonProcessingException {
-        PageResponse<ProductResponse> products =
+        Paging.check(page, size);
+        PageResponse<ProductJson> products =
                 productService.getProductsByFilter(filter,page, size);
-        return ApiResponse.<PageResponse<ProductResponse>>builder()
+        return ApiResponse.<PageResponse<ProductJson>>builder()
                 .data(products)
                 .build();
     }
+    // Số lượng sản phẩm theo từng facet cho sidebar bộ lọc
+    @GetMapping("/filter/facets")
+    public ApiResponse<FacetCountResponse> getFilterFacets(FilterRequest filter) {
+        return ApiResponse.<FacetCountResponse>builder()
+                .data(productService.getFacetCounts(filter))
+                .build();
+    }
 
 
 }
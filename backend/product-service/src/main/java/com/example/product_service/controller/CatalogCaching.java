@@ -0,0 +1,23 @@
+package com.example.product_service.controller;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+// ETag + Cache-Control cho các API GET của danh mục sản phẩm: proxy/CDN được lưu lại nhưng phải
+// hỏi lại bằng If-None-Match trước khi dùng
+final class CatalogCaching {
+    static final String REVALIDATE_CACHE_CONTROL = "public, max-age=0, must-revalidate";
+
+    private CatalogCaching() {
+    }
+
+    // true nếu client đã có bản mới nhất: Spring trả 304 và controller trả về null
+    static boolean notModified(ServletWebRequest request, String etag) {
+        HttpServletResponse response = request.getResponse();
+        if (response != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, REVALIDATE_CACHE_CONTROL);
+        }
+        return request.checkNotModified(etag);
+    }
+}
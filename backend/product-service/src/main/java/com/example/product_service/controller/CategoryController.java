@@ -6,12 +6,14 @@ import com.example.product_service.dto.response.CategoryResponse;
 import com.example.product_service.dto.response.PageResponse;
 import com.example.product_service.exception.AppException;
 import com.example.product_service.exception.ErrorCode;
+import com.example.product_service.service.CatalogVersions;
 import com.example.product_service.service.CategoryService;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.data.domain.Page;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.List;
 
@@ -21,14 +23,25 @@ import java.util.List;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class CategoryController {
     CategoryService categoryService;
+    CatalogVersions catalogVersions;
     // Get all categories
     @GetMapping
     public ApiResponse<PageResponse<CategoryResponse>> getAllCategories(
             @RequestParam(required = false, defaultValue = "1") Integer page,
-            @RequestParam(required = false, defaultValue = "10") Integer size
+            @RequestParam(required = false, defaultValue = "10") Integer size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "false") boolean withCount,
+            ServletWebRequest webRequest
     ) {
+        Paging.check(page, size);
+        if (CatalogCaching.notModified(webRequest, catalogVersions.categoriesTag())) {
+            return null;
+        }
+        PageResponse<CategoryResponse> categories = cursor != null
+                ? categoryService.getAllCategoriesByCursor(cursor, size, withCount)
+                : categoryService.getAllCategories(page,size);
         return ApiResponse.<PageResponse<CategoryResponse>>builder()
-                .data(categoryService.getAllCategories(page,size))
+                .data(categories)
                 .build();
     }
     // search
@@ -36,7 +49,12 @@ public class CategoryController {
     public ApiResponse<PageResponse<CategoryResponse>> searchCategories(
             @RequestParam(required = false) String keyword,
             @RequestParam(required = false, defaultValue = "1") Integer page,
-            @RequestParam(required = false, defaultValue = "10") Integer size){
+            @RequestParam(required = false, defaultValue = "10") Integer size,
+            ServletWebRequest webRequest){
+        Paging.check(page, size);
+        if (CatalogCaching.notModified(webRequest, catalogVersions.categoriesTag())) {
+            return null;
+        }
         return ApiResponse.<PageResponse<CategoryResponse>>builder()
                 .data(categoryService.searchCategories(keyword, page, size))
                .build();
@@ -50,7 +68,10 @@ public class CategoryController {
     }
     // Get category by id
     @GetMapping("/{id}")
-    public ApiResponse<CategoryResponse> getCategoryById(@PathVariable Long id) {
+    public ApiResponse<CategoryResponse> getCategoryById(@PathVariable Long id, ServletWebRequest webRequest) {
+        if (CatalogCaching.notModified(webRequest, catalogVersions.categoriesTag())) {
+            return null;
+        }
         return ApiResponse.<CategoryResponse>builder()
                 .data(categoryService.getCategoryById(id))
                 .build();
@@ -0,0 +1,29 @@
+package com.example.product_service.controller;
+
+import com.example.product_service.exception.AppException;
+import com.example.product_service.exception.ErrorCode;
+import com.example.product_service.service.ProductSort;
+
+// Kiểm tra tham số phân trang trước khi vào service (page bắt đầu từ 1)
+final class Paging {
+    static final int MAX_SIZE = 1000;
+
+    private Paging() {
+    }
+
+    static void check(int page, int size) {
+        // Giới hạn size để trang keyset (size + 1 dòng) không tràn số và 1 request không đọc cả bảng
+        if (page < 1 || size < 1 || size > MAX_SIZE) {
+            throw new AppException(ErrorCode.INVALID_PAGE);
+        }
+    }
+
+    // Cursor chỉ mã hóa id nên phân trang keyset chỉ đi theo thứ tự mặc định (id tăng dần)
+    static ProductSort sort(String cursor, String sort) {
+        ProductSort productSort = ProductSort.from(sort);
+        if (cursor != null && productSort != ProductSort.DEFAULT) {
+            throw new AppException(ErrorCode.CURSOR_WITH_SORT);
+        }
+        return productSort;
+    }
+}
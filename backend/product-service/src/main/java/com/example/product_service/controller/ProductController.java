@@ -2,17 +2,24 @@ package com.example.product_service.controller;
 
 import com.example.product_service.dto.request.FilterRequest;
 import com.example.product_service.dto.response.ApiResponse;
+import com.example.product_service.dto.response.FacetCountResponse;
 import com.example.product_service.dto.response.PageResponse;
-import com.example.product_service.dto.response.ProductResponse;
+import com.example.product_service.dto.response.ProductJson;
+import com.example.product_service.dto.response.SuggestionResponse;
 import com.example.product_service.exception.AppException;
 import com.example.product_service.exception.ErrorCode;
+import com.example.product_service.service.CatalogVersions;
 import com.example.product_service.service.ProductService;
+import com.example.product_service.service.ProductSort;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.List;
 
 @RestController
 @RequiredArgsConstructor
@@ -20,57 +27,114 @@ import org.springframework.web.bind.annotation.*;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class ProductController {
     ProductService productService;
+    CatalogVersions catalogVersions;
     @GetMapping
     @CrossOrigin(origins = "http://localhost:3000,http://localhost:3001,null", allowCredentials = "true")
-    public ApiResponse<PageResponse<ProductResponse>> getAllProducts(
+    public ApiResponse<PageResponse<ProductJson>> getAllProducts(
             @RequestParam(required = false, defaultValue = "1") Integer page,
-            @RequestParam(required = false, defaultValue = "10") Integer size
+            @RequestParam(required = false, defaultValue = "10") Integer size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "false") boolean withCount,
+            @RequestParam(required = false) String sort,
+            ServletWebRequest webRequest
     ){
-        return ApiResponse.<PageResponse<ProductResponse>>builder()
-                .data(productService.getAllProductsForUser(page, size))
+        Paging.check(page, size);
+        ProductSort productSort = Paging.sort(cursor, sort);
+        if (CatalogCaching.notModified(webRequest, catalogVersions.catalogTag())) {
+            return null;
+        }
+        // Có tham số cursor thì phân trang keyset (theo id), không thì phân trang theo offset có sắp xếp
+        PageResponse<ProductJson> products = cursor != null
+                ? productService.getAllProductsForUserByCursor(cursor, size, withCount)
+                : productService.getAllProductsForUser(page, size, productSort);
+        return ApiResponse.<PageResponse<ProductJson>>builder()
+                .data(products)
                 .build();
     }
     // Get product by id
     @GetMapping("/{id}")
-    public ApiResponse<ProductResponse> getProductById(@PathVariable Long id){
-        ProductResponse product = productService.getProductByIdForUser(id);
+    public ApiResponse<ProductJson> getProductById(@PathVariable Long id, ServletWebRequest webRequest){
+        if (CatalogCaching.notModified(webRequest, catalogVersions.productTag(id))) {
+            return null;
+        }
+        ProductJson product = productService.getProductJsonForUser(id);
         if(product == null) throw new AppException(ErrorCode.PRODUCT_NOT_FOUND);
-        return ApiResponse.<ProductResponse>builder()
+        return ApiResponse.<ProductJson>builder()
                 .data(product)
                 .build();
     }
     // Get products by category id
     @GetMapping("/category/{categoryId}")
-    public ApiResponse<PageResponse<ProductResponse>>
+    public ApiResponse<PageResponse<ProductJson>>
     getProductsByCategoryId(@PathVariable Long categoryId,
                             @RequestParam(required = false, defaultValue = "1") Integer page,
-                            @RequestParam(required = false, defaultValue = "10") Integer size) {
-        PageResponse<ProductResponse> products = productService.getProductsByCategoryForUser(categoryId,page,size);
-        return ApiResponse.<PageResponse<ProductResponse>>builder()
+                            @RequestParam(required = false, defaultValue = "10") Integer size,
+                            @RequestParam(required = false) String cursor,
+                            @RequestParam(required = false, defaultValue = "false") boolean withCount,
+                            @RequestParam(required = false) String sort,
+                            ServletWebRequest webRequest) {
+        Paging.check(page, size);
+        ProductSort productSort = Paging.sort(cursor, sort);
+        if (CatalogCaching.notModified(webRequest, catalogVersions.categoryProductsTag(categoryId))) {
+            return null;
+        }
+        PageResponse<ProductJson> products = cursor != null
+                ? productService.getProductsByCategoryForUserByCursor(categoryId, cursor, size, withCount)
+                : productService.getProductsByCategoryForUser(categoryId, page, size, productSort);
+        return ApiResponse.<PageResponse<ProductJson>>builder()
                 .data(products)
                 .build();
     }
     @GetMapping("/search")
-    public ApiResponse<PageResponse<ProductResponse>> searchProducts(
-            @RequestParam String keyword,
+    public ApiResponse<PageResponse<ProductJson>> searchProducts(
+            @RequestParam(required = false) String keyword,
             @RequestParam(required = false, defaultValue = "1") Integer page,
-            @RequestParam(required = false, defaultValue = "10") Integer size) {
-        PageResponse<ProductResponse> products =
+            @RequestParam(required = false, defaultValue = "10") Integer size,
+            ServletWebRequest webRequest) {
+        Paging.check(page, size);
+        if (CatalogCaching.notModified(webRequest, catalogVersions.catalogTag())) {
+            return null;
+        }
+        PageResponse<ProductJson> products =
                 productService.searchProductsByUser(keyword, page, size);
-        return ApiResponse.<PageResponse<ProductResponse>>builder()
+        return ApiResponse.<PageResponse<ProductJson>>builder()
                 .data(products)
                 .build() ;
     }
+    // Gợi ý tìm kiếm khi người dùng đang gõ
+    @GetMapping("/suggest")
+    public ApiResponse<List<SuggestionResponse>> suggestProducts(
+            @RequestParam String keyword,
+            @RequestParam(required = false, defaultValue = "5") Integer limit) {
+        return ApiResponse.<List<SuggestionResponse>>builder()
+                .data(productService.suggestProducts(keyword, limit))
+                .build();
+    }
     // Get products by filter
     @GetMapping("/filter")
-    public ApiResponse<PageResponse<ProductResponse>> filterProducts(
+    public ApiResponse<PageResponse<ProductJson>> filterProducts(
             FilterRequest filter,
             @RequestParam(required = false, defaultValue = "1") Integer page,
-            @RequestParam(required = false, defaultValue = "10") Integer size) throws JsonProcessingException {
-        PageResponse<ProductResponse> products =
+            @RequestParam(required = false, defaultValue = "10") Integer size,
+            ServletWebRequest webRequest) throws JsonProcessingException {
+        Paging.check(page, size);
+        if (CatalogCaching.notModified(webRequest, catalogVersions.catalogTag())) {
+            return null;
+        }
+        PageResponse<ProductJson> products =
                 productService.getProductsByFilter(filter,page, size);
-        return ApiResponse.<PageResponse<ProductResponse>>builder()
+        return ApiResponse.<PageResponse<ProductJson>>builder()
                 .data(products)
                 .build();
     }
+    // Số lượng sản phẩm theo từng facet cho sidebar bộ lọc
+    @GetMapping("/filter/facets")
+    public ApiResponse<FacetCountResponse> getFilterFacets(FilterRequest filter, ServletWebRequest webRequest) {
+        if (CatalogCaching.notModified(webRequest, catalogVersions.catalogTag())) {
+            return null;
+        }
+        return ApiResponse.<FacetCountResponse>builder()
+                .data(productService.getFacetCounts(filter))
+                .build();
+    }
 }
@@ -0,0 +1,38 @@
+package com.example.product_service.controller;
+
+import com.example.product_service.dto.request.OrderItemRequest;
+import com.example.product_service.dto.response.ApiResponse;
+import com.example.product_service.dto.response.StockReservationResponse;
+import com.example.product_service.service.StockReservationService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+// Giữ / trả hàng cho checkout. order-service gọi bằng JWT của khách đặt hàng nên chỉ yêu cầu đã đăng nhập;
+// xác nhận trừ kho đi qua Kafka (stock-reservation-confirmed)
+@RestController
+@RequestMapping("/stock/reservations")
+@RequiredArgsConstructor
+@PreAuthorize("isAuthenticated()")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class StockReservationController {
+    StockReservationService stockReservationService;
+
+    @PostMapping
+    public ApiResponse<StockReservationResponse> reserveStock(@RequestBody List<OrderItemRequest> request) {
+        return ApiResponse.<StockReservationResponse>builder()
+                .data(stockReservationService.reserve(request))
+                .build();
+    }
+
+    @DeleteMapping("/{reservationId}")
+    public ApiResponse<Void> releaseReservation(@PathVariable String reservationId) {
+        stockReservationService.release(reservationId);
+        return ApiResponse.<Void>builder()
+                .build();
+    }
+}
@@ -6,11 +6,13 @@ import com.example.product_service.dto.response.ApiResponse;
 import com.example.product_service.dto.response.PageResponse;
 import com.example.product_service.exception.AppException;
 import com.example.product_service.exception.ErrorCode;
+import com.example.product_service.service.CatalogVersions;
 import com.example.product_service.service.WeightTypeService;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 @RestController
 @RequestMapping("/weight-types")
@@ -18,13 +20,19 @@ import org.springframework.web.bind.annotation.*;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class WeightTypeController {
     WeightTypeService weightTypeService;
+    CatalogVersions catalogVersions;
 
     // Get all weight types
     @GetMapping
     public ApiResponse<PageResponse<WeightTypeResponse>> getAllWeightTypes(
             @RequestParam(required = false, defaultValue = "1") Integer page,
-            @RequestParam(required = false, defaultValue = "10") Integer size
+            @RequestParam(required = false, defaultValue = "10") Integer size,
+            ServletWebRequest webRequest
     ) {
+        Paging.check(page, size);
+        if (CatalogCaching.notModified(webRequest, catalogVersions.weightTypesTag())) {
+            return null;
+        }
         return ApiResponse.<PageResponse<WeightTypeResponse>>builder()
                 .data(weightTypeService.getAllWeightTypes(page, size))
                 .build();
@@ -41,7 +49,10 @@ public class WeightTypeController {
 
     // Get weight type by id
     @GetMapping("/{id}")
-    public ApiResponse<WeightTypeResponse> getWeightTypeById(@PathVariable Long id) {
+    public ApiResponse<WeightTypeResponse> getWeightTypeById(@PathVariable Long id, ServletWebRequest webRequest) {
+        if (CatalogCaching.notModified(webRequest, catalogVersions.weightTypesTag())) {
+            return null;
+        }
         return ApiResponse.<WeightTypeResponse>builder()
                 .data(weightTypeService.getWeightTypeById(id))
                 .build();
@@ -17,4 +17,6 @@ public class FilterRequest {
     private String brand;
     private String origin;
     private String query;
+    // price_asc, price_desc, newest, best_selling, rating; bỏ trống là theo id
+    private String sort;
 }
@@ -0,0 +1,23 @@
+package com.example.product_service.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.io.Serializable;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FacetCountResponse implements Serializable {
+    long totalElements;
+    Map<String, Long> brands;
+    Map<String, Long> origins;
+    Map<Long, Long> categories;
+    long organic;
+    long nonOrganic;
+    Double minPrice;
+    Double maxPrice;
+}
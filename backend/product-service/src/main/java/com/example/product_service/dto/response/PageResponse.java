@@ -1,5 +1,6 @@
 package com.example.product_service.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
@@ -15,4 +16,10 @@ public class PageResponse<T>  implements Serializable {
     int totalPages;
     long totalElements;
     List<T> elements;
+    // Chỉ có khi phân trang theo cursor (keyset). Khi đó totalPages/totalElements = -1 nếu không yêu cầu đếm
+    // null ở trang cuối (không gửi trong JSON); hasNext cho biết còn trang sau hay không
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    String nextCursor;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Boolean hasNext;
 }
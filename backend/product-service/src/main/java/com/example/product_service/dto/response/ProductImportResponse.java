@@ -0,0 +1,20 @@
+package com.example.product_service.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductImportResponse implements Serializable {
+    long totalRows;
+    long importedRows;
+    long failedRows;
+    // Chỉ giữ tối đa một số lỗi đầu tiên để response không phình theo kích thước file
+    List<ImportRowError> errors;
+}
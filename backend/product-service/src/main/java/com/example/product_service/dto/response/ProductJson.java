@@ -0,0 +1,36 @@
+package com.example.product_service.dto.response;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+
+// ProductResponse đã serialize sẵn thành JSON; khi trả về chỉ chép nguyên mảng byte vào response
+public final class ProductJson extends JsonSerializable.Base {
+    private final SerializedString json;
+
+    public ProductJson(String json) {
+        this.json = new SerializedString(json);
+        // Mã hóa UTF-8 ngay lúc tạo để request không phải làm lại
+        this.json.asUnquotedUTF8();
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider provider) throws IOException {
+        generator.writeRawValue(json);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider provider,
+                                  TypeSerializer typeSerializer) throws IOException {
+        serialize(generator, provider);
+    }
+
+    @Override
+    public String toString() {
+        return json.getValue();
+    }
+}
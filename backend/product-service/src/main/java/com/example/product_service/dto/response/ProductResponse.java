@@ -17,10 +17,16 @@ public class ProductResponse implements Serializable {
     Double price;
     Double oldPrice;
     String description;
-    int average_rating;
+    double average_rating;
+    long rating_count;
+    // Số lượt đánh giá theo từng mức 1..5 sao
+    List<Long> rating_histogram;
     List<ReviewResponse> reviews;
     CategoryResponse category;
     String image;
+    String imageThumbnail;
+    String imageMedium;
+    String imageLarge;
     boolean organic;
     String origin;
     String packaging;
@@ -0,0 +1,19 @@
+package com.example.product_service.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StockReservationResponse implements Serializable {
+    String reservationId;
+    // Danh sách sản phẩm không đủ hàng, rỗng nếu giữ hàng thành công
+    List<String> outOfStockProducts;
+    long expiresAt;
+}
@@ -0,0 +1,17 @@
+package com.example.product_service.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SuggestionResponse implements Serializable {
+    String text;
+    // PRODUCT, BRAND hoặc CATEGORY
+    String type;
+}
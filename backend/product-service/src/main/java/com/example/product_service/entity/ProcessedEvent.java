@@ -0,0 +1,26 @@
+package com.example.product_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.sql.Timestamp;
+
+// Id các message Kafka đã áp dụng, ghi cùng transaction với thay đổi để message gửi lại bị bỏ qua
+@Table(name = "processed_event")
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProcessedEvent {
+    @Id
+    String id;
+
+    @Column(nullable = false, updatable = false)
+    @CreationTimestamp
+    Timestamp processedAt;
+}
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -29,14 +31,26 @@ public class Product implements Serializable {
     @ManyToOne
     Category category;
     String image;
+    // Các bản thu nhỏ sinh bất đồng bộ từ ảnh gốc, null cho tới khi xử lý xong
+    String imageThumbnail;
+    String imageMedium;
+    String imageLarge;
     Boolean organic;
     String origin;
     String packaging;
     String brand;
     String howToUse;
     String howToPreserve;
+    // Nạp khối lượng của cả trang sản phẩm bằng 1 query IN thay vì 1 query mỗi sản phẩm
     @OneToMany(mappedBy = "product",fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference
+    @BatchSize(size = 100)
     Set<WeightProduct> weightProducts;
     boolean isActive = true;
+    // Tổng số lượng đã bán, dùng để sắp xếp "bán chạy"
+    @ColumnDefault("0")
+    long soldQuantity;
+    @Embedded
+    @Builder.Default
+    RatingSummary rating = new RatingSummary();
 }
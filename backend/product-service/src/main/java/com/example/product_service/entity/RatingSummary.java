@@ -0,0 +1,36 @@
+package com.example.product_service.entity;
+
+import jakarta.persistence.Embeddable;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.io.Serializable;
+
+// Tổng hợp đánh giá lưu ngay trên bảng product, ghi đè từ sự kiện review hoặc khi backfill
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Embeddable
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RatingSummary implements Serializable {
+    @ColumnDefault("0")
+    long ratingCount;
+    @ColumnDefault("0")
+    long ratingSum;
+    @ColumnDefault("0")
+    long oneStar;
+    @ColumnDefault("0")
+    long twoStar;
+    @ColumnDefault("0")
+    long threeStar;
+    @ColumnDefault("0")
+    long fourStar;
+    @ColumnDefault("0")
+    long fiveStar;
+    // Thời điểm (ms, đồng hồ review-service) của tổng hợp đang lưu; 0 là chưa từng backfill
+    @ColumnDefault("0")
+    long ratingAsOf;
+}
@@ -0,0 +1,46 @@
+package com.example.product_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+// Lượt giữ hàng cho đơn đang checkout. Lưu trong DB để khởi động lại hoặc chạy nhiều instance
+// không làm mất hàng đang giữ; số lượng đang giữ là tổng các dòng của lượt còn HELD
+@Table(name = "stock_reservation", indexes = @Index(name = "idx_reservation_status_expires", columnList = "status, expiresAt"))
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StockReservation {
+    public enum Status {
+        HELD,
+        CONFIRMED,
+        RELEASED
+    }
+
+    @Id
+    String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    Status status;
+
+    @Column(nullable = false)
+    Timestamp expiresAt;
+
+    @Column(nullable = false, updatable = false)
+    @CreationTimestamp
+    Timestamp createdAt;
+
+    @OneToMany(mappedBy = "reservation", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Builder.Default
+    List<StockReservationLine> lines = new ArrayList<>();
+}
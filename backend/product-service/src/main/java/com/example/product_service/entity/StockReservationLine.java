@@ -0,0 +1,32 @@
+package com.example.product_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+// Số lượng giữ của 1 khối lượng sản phẩm trong 1 lượt giữ hàng
+@Table(name = "stock_reservation_line", indexes = @Index(name = "idx_reservation_line_weight", columnList = "weightProductId"))
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StockReservationLine {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "reservation_id", nullable = false)
+    StockReservation reservation;
+
+    @Column(nullable = false)
+    Long weightProductId;
+
+    @Column(nullable = false)
+    Long productId;
+
+    int quantity;
+}
@@ -2,6 +2,7 @@ package com.example.product_service.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 
 import java.util.Set;
 
@@ -11,6 +12,7 @@ import java.util.Set;
 @NoArgsConstructor
 @Builder
 @Entity
+@BatchSize(size = 100)
 public class WeightType {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -25,6 +25,14 @@ public enum ErrorCode {
     CATEGORY_NOT_FOUND(1010,"Category not found",HttpStatus.NOT_FOUND),
     ROLE_NOT_FOUND(1007,"Role not found",HttpStatus.NOT_FOUND),
     WEIGHT_TYPE_NOT_FOUND(1007,"WeightType not found",HttpStatus.NOT_FOUND),
+    OUT_OF_STOCK(1102,"Product is out of stock",HttpStatus.BAD_REQUEST),
+    RESERVATION_NOT_FOUND(1103,"Stock reservation not found or expired",HttpStatus.NOT_FOUND),
+    INVALID_CURSOR(1104,"Invalid pagination cursor",HttpStatus.BAD_REQUEST),
+    INVALID_FILE_TYPE(1105,"Only JPEG, PNG or WebP images are allowed",HttpStatus.BAD_REQUEST),
+    IMAGE_NOT_FOUND(1106,"Image not found",HttpStatus.NOT_FOUND),
+    INVALID_SORT(1107,"Invalid sort order",HttpStatus.BAD_REQUEST),
+    INVALID_PAGE(1108,"Page must be at least 1 and size between 1 and 1000",HttpStatus.BAD_REQUEST),
+    CURSOR_WITH_SORT(1109,"Cursor pagination only supports the default order",HttpStatus.BAD_REQUEST),
     UNCATEGORIZED_EXCEPTION(9999,"uncategorized exception", HttpStatus.INTERNAL_SERVER_ERROR);
     private int code;
     private String message;
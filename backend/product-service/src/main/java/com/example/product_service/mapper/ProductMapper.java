@@ -6,6 +6,7 @@ import com.example.product_service.dto.response.ProductResponse;
 import com.example.product_service.dto.response.WeightProductResponse;
 import com.example.product_service.dto.response.WeightTypeResponse;
 import com.example.product_service.entity.Product;
+import com.example.product_service.entity.RatingSummary;
 import com.example.product_service.entity.WeightProduct;
 import com.example.product_service.entity.WeightType;
 import org.mapstruct.*;
@@ -21,15 +22,27 @@ public interface ProductMapper {
     @Mapping(target = "category", source = "category")
     @Mapping(target = "isActive", source = "active")
     @Mapping(target = "weightProducts", expression = "java(toWeightProductResponses(product.getWeightProducts()))")
+    @Mapping(target = "average_rating", expression = "java(toAverageRating(product.getRating()))")
+    @Mapping(target = "rating_count", expression = "java(product.getRating() != null ? product.getRating().getRatingCount() : 0)")
+    @Mapping(target = "rating_histogram", expression = "java(toRatingHistogram(product.getRating()))")
     ProductResponse toProductResponse(Product product);
 
     @Mapping(target = "weightProducts", ignore = true)
     @Mapping(target = "isActive", source = "active",defaultValue = "true")
+    @Mapping(target = "rating", ignore = true)
+    @Mapping(target = "image", ignore = true)
+    @Mapping(target = "imageThumbnail", ignore = true)
+    @Mapping(target = "imageMedium", ignore = true)
+    @Mapping(target = "imageLarge", ignore = true)
     Product toProduct(ProductRequest productRequest);
 
     @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
     @Mapping(target = "id_product", ignore = true)
     @Mapping(target = "image", ignore = true)
+    @Mapping(target = "imageThumbnail", ignore = true)
+    @Mapping(target = "imageMedium", ignore = true)
+    @Mapping(target = "imageLarge", ignore = true)
+    @Mapping(target = "rating", ignore = true)
     void updateProduct(@MappingTarget Product product, ProductRequest request);
 
     default List<WeightProductResponse> toWeightProductResponses(Set<WeightProduct> weightProducts) {
@@ -43,6 +56,18 @@ public interface ProductMapper {
                 .collect(Collectors.toList());
     }
 
+    default double toAverageRating(RatingSummary rating) {
+        if (rating == null || rating.getRatingCount() <= 0) return 0;
+        // Làm tròn 1 chữ số thập phân như cách hiển thị trên giao diện
+        return Math.round(rating.getRatingSum() * 10.0 / rating.getRatingCount()) / 10.0;
+    }
+
+    default List<Long> toRatingHistogram(RatingSummary rating) {
+        if (rating == null) return List.of(0L, 0L, 0L, 0L, 0L);
+        return List.of(rating.getOneStar(), rating.getTwoStar(), rating.getThreeStar(),
+                rating.getFourStar(), rating.getFiveStar());
+    }
+
     default WeightTypeResponse toWeightTypeResponse(WeightType weightType) {
         if (weightType == null) return null;
         return WeightTypeResponse.builder()
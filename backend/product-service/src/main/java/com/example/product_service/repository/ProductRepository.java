@@ -5,22 +5,96 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product,Long>, JpaSpecificationExecutor<Product> {
     @Query("SELECT p FROM Product p JOIN p.category c WHERE c.id_category = ?1")
     Page<Product> findByCategoryId(Long categoryId, Pageable pageable  );
-    @Query("SELECT p FROM Product p WHERE " +
-            "LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(p.description) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(p.brand) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(p.category.name) LIKE LOWER(CONCAT('%', :keyword, '%'))")
-    Page<Product> searchProducts(String keyword, Pageable pageable);
+    // Phân trang keyset theo id_product, không cần query COUNT
+    @Query("SELECT p FROM Product p WHERE p.id_product > :afterId ORDER BY p.id_product")
+    List<Product> findAfter(@Param("afterId") long afterId, Pageable pageable);
+    @Query("SELECT p FROM Product p WHERE p.category.id_category = :categoryId " +
+            "AND p.id_product > :afterId ORDER BY p.id_product")
+    List<Product> findByCategoryAfter(@Param("categoryId") long categoryId, @Param("afterId") long afterId,
+                                      Pageable pageable);
+    @Query("SELECT p FROM Product p WHERE p.isActive = true AND p.id_product > :afterId ORDER BY p.id_product")
+    List<Product> findActiveAfter(@Param("afterId") long afterId, Pageable pageable);
+    @Query("SELECT p FROM Product p WHERE p.isActive = true AND p.category.id_category = :categoryId " +
+            "AND p.id_product > :afterId ORDER BY p.id_product")
+    List<Product> findActiveByCategoryAfter(@Param("categoryId") long categoryId, @Param("afterId") long afterId,
+                                            Pageable pageable);
+    // Ghi đè tổng hợp đánh giá nếu bản nhận được không cũ hơn bản đang lưu, nên sự kiện gửi lại hay đến trễ vô hại
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.rating.ratingCount = :ratingCount, " +
+            "p.rating.ratingSum = :ratingSum, " +
+            "p.rating.oneStar = :oneStar, " +
+            "p.rating.twoStar = :twoStar, " +
+            "p.rating.threeStar = :threeStar, " +
+            "p.rating.fourStar = :fourStar, " +
+            "p.rating.fiveStar = :fiveStar, " +
+            "p.rating.ratingAsOf = :asOf " +
+            "WHERE p.id_product = :productId AND p.rating.ratingAsOf <= :asOf")
+    int applyRatingSummary(@Param("productId") long productId,
+                           @Param("ratingCount") long ratingCount,
+                           @Param("ratingSum") long ratingSum,
+                           @Param("oneStar") long oneStar,
+                           @Param("twoStar") long twoStar,
+                           @Param("threeStar") long threeStar,
+                           @Param("fourStar") long fourStar,
+                           @Param("fiveStar") long fiveStar,
+                           @Param("asOf") long asOf);
+    // Đưa về 0 mọi sản phẩm chưa có tổng hợp mới hơn asOf (sản phẩm không còn review nào)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.rating.ratingCount = 0, p.rating.ratingSum = 0, " +
+            "p.rating.oneStar = 0, p.rating.twoStar = 0, p.rating.threeStar = 0, " +
+            "p.rating.fourStar = 0, p.rating.fiveStar = 0, p.rating.ratingAsOf = :asOf " +
+            "WHERE p.rating.ratingAsOf <= :asOf")
+    int resetRatingsAsOf(@Param("asOf") long asOf);
+    boolean existsByRating_RatingAsOfGreaterThan(long asOf);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.soldQuantity = p.soldQuantity + :quantity WHERE p.id_product = :productId")
+    int addSoldQuantity(@Param("productId") long productId, @Param("quantity") long quantity);
+    @Query("SELECT p.id_product FROM Product p WHERE p.id_product > :afterId ORDER BY p.id_product")
+    List<Long> findIdsAfter(@Param("afterId") long afterId, Pageable pageable);
+    @Query("SELECT p.id_product FROM Product p WHERE p.isActive = true AND p.id_product > :afterId " +
+            "ORDER BY p.id_product")
+    List<Long> findActiveIdsAfter(@Param("afterId") long afterId, Pageable pageable);
+    @Query("SELECT COUNT(p) FROM Product p WHERE p.category.id_category = :categoryId")
+    long countByCategory(@Param("categoryId") long categoryId);
+    @Query("SELECT COUNT(p) FROM Product p WHERE p.isActive = true")
+    long countActive();
+    @Query("SELECT COUNT(p) FROM Product p WHERE p.isActive = true AND p.category.id_category = :categoryId")
+    long countActiveByCategory(@Param("categoryId") long categoryId);
+    // Lấy sản phẩm kèm các loại khối lượng trong 1 query (dùng cho kiểm tra tồn kho)
+    @Query("SELECT DISTINCT p FROM Product p " +
+            "LEFT JOIN FETCH p.weightProducts wp " +
+            "LEFT JOIN FETCH wp.weightType " +
+            "WHERE p.id_product IN :productIds")
+    List<Product> findAllWithWeightProductsByIdIn(@Param("productIds") Collection<Long> productIds);
+    boolean existsByImage(String image);
+    // Sản phẩm có ảnh nhưng chưa có bản thu nhỏ (ảnh upload trước khi có bản thu nhỏ), theo keyset id_product
+    @Query("SELECT p.id_product, p.image FROM Product p WHERE p.image IS NOT NULL AND p.imageThumbnail IS NULL " +
+            "AND p.id_product > :afterId ORDER BY p.id_product")
+    List<Object[]> findMissingImageVariants(@Param("afterId") long afterId, Pageable pageable);
+    // Chỉ ghi khi sản phẩm vẫn dùng ảnh gốc đó (ảnh có thể đã bị thay trong lúc tạo bản thu nhỏ)
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.imageThumbnail = :thumbnail, p.imageMedium = :medium, p.imageLarge = :large " +
+            "WHERE p.id_product = :productId AND p.image = :image")
+    int updateImageVariants(@Param("productId") long productId,
+                            @Param("image") String image,
+                            @Param("thumbnail") String thumbnail,
+                            @Param("medium") String medium,
+                            @Param("large") String large);
 //    @Query(value = "SELECT * FROM product p " +
 //            "JOIN "category" c ON p.category_id = c.id " +
 //            "WHERE MATCH(p.name, p.description, p.brand) AGAINST(:keyword IN BOOLEAN MODE) " +
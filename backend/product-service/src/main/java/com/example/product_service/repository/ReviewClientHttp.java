@@ -0,0 +1,15 @@
+package com.example.product_service.repository;
+
+import com.example.product_service.dto.response.ApiResponse;
+import com.example.product_service.dto.response.RatingSummaryResponse;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+@FeignClient(name = "review-service", url = "http://localhost:8083/reviews")
+public interface ReviewClientHttp {
+    @GetMapping(value = "/rating-summaries", produces = MediaType.APPLICATION_JSON_VALUE)
+    ApiResponse<RatingSummaryResponse> getRatingSummaries(@RequestParam("afterProductId") long afterProductId,
+                                                          @RequestParam("size") int size);
+}
@@ -0,0 +1,36 @@
+package com.example.product_service.repository;
+
+import com.example.product_service.entity.StockReservation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, String> {
+
+    // Khóa lượt giữ hàng để xác nhận/hủy không chạy chồng lên nhau
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM StockReservation r WHERE r.id = :id")
+    Optional<StockReservation> lockById(@Param("id") String id);
+
+    // Trả về [id WeightProduct, tổng số lượng đang giữ]
+    @Query("SELECT l.weightProductId, SUM(l.quantity) FROM StockReservationLine l " +
+            "WHERE l.reservation.status = com.example.product_service.entity.StockReservation.Status.HELD " +
+            "AND l.weightProductId IN :ids GROUP BY l.weightProductId")
+    List<Object[]> sumHeldByWeightProductIdIn(@Param("ids") Collection<Long> ids);
+
+    // Lượt đang được xác nhận giữ khóa dòng nên câu UPDATE chờ rồi bỏ qua nếu lượt đó đã CONFIRMED
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.status = com.example.product_service.entity.StockReservation.Status.RELEASED " +
+            "WHERE r.status = com.example.product_service.entity.StockReservation.Status.HELD AND r.expiresAt <= :now")
+    int releaseExpired(@Param("now") Timestamp now);
+}
@@ -0,0 +1,42 @@
+package com.example.product_service.repository;
+
+import com.example.product_service.entity.WeightProduct;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface WeightProductRepository extends JpaRepository<WeightProduct, Long> {
+    // Cập nhật tồn kho nguyên tử, không cho tồn kho âm. Trả về 0 nếu bị từ chối
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE WeightProduct wp SET wp.stock = wp.stock + :quantity " +
+            "WHERE wp.product.id_product = :productId " +
+            "AND wp.weightType.id IN (SELECT wt.id FROM WeightType wt WHERE wt.value = :weight) " +
+            "AND wp.stock + :quantity >= 0")
+    int addStock(@Param("productId") Long productId,
+                 @Param("weight") double weight,
+                 @Param("quantity") int quantity);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE WeightProduct wp SET wp.stock = wp.stock + :quantity " +
+            "WHERE wp.id = :id AND wp.stock + :quantity >= 0")
+    int addStockById(@Param("id") Long id, @Param("quantity") int quantity);
+
+    // Trả về [id, stock], khóa các dòng theo id tăng dần tới hết transaction (giữ hàng giữa nhiều instance)
+    @Query(value = "SELECT id, stock FROM weight_product WHERE id IN (:ids) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Object[]> lockStockByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Trả về [id, id sản phẩm, tên sản phẩm, khối lượng, stock]
+    @Query("SELECT wp.id, wp.product.id_product, wp.product.name, wp.weightType.value, wp.stock " +
+            "FROM WeightProduct wp")
+    List<Object[]> findAllStockLevels();
+
+    @Query("SELECT wp.id, wp.product.id_product, wp.product.name, wp.weightType.value, wp.stock " +
+            "FROM WeightProduct wp WHERE wp.product.id_product IN :productIds")
+    List<Object[]> findStockLevelsByProductIdIn(@Param("productIds") Collection<Long> productIds);
+}
@@ -0,0 +1,492 @@
+package com.example.product_service.service;
+
+import com.example.product_service.dto.response.PageResponse;
+import com.example.product_service.dto.response.ProductJson;
+import com.example.product_service.dto.response.ProductResponse;
+import com.example.product_service.entity.Product;
+import com.example.product_service.mapper.ProductMapper;
+import com.example.product_service.repository.ProductRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntToLongFunction;
+import java.util.stream.IntStream;
+
+// Ảnh chụp bất biến toàn bộ sản phẩm đang bán, mỗi sản phẩm đã serialize sẵn JSON (kèm URL ảnh đầy đủ).
+// Người đọc chỉ đọc biến volatile nên không cần khóa; khi danh mục thay đổi, bản mới được dựng
+// từ bản cũ + các sản phẩm vừa đổi rồi thay thế nguyên khối.
+// Mỗi thứ tự sắp xếp (giá, mới nhất, bán chạy, đánh giá) có sẵn mảng vị trí đã sắp xếp cho toàn bộ
+// và cho từng danh mục, nên phân trang có sắp xếp không cần ORDER BY trên DB.
+// Mỗi instance giữ snapshot riêng: thay đổi ở instance này được publish qua Redis để CatalogSync
+// ở các instance khác áp dụng cùng các id đó
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ActiveCatalog {
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    private static final int[] NO_POSITIONS = new int[0];
+
+    final ProductRepository productRepository;
+    final ProductMapper productMapper;
+    final ObjectMapper objectMapper;
+    final CatalogVersions catalogVersions;
+    final RedisTemplate<String, Object> redisTemplate;
+    // id chờ áp dụng; nhiều lần refresh dồn dập được gộp vào 1 lần dựng snapshot
+    final Set<Long> pendingIds = ConcurrentHashMap.newKeySet();
+
+    // null cho tới khi build xong lần đầu
+    volatile Snapshot snapshot;
+
+    // ids tăng dần; các mảng còn lại cùng chỉ số với ids.
+    // orders[sort] là vị trí sản phẩm theo thứ tự sort, categoryOrders[id danh mục][sort] tương tự trong danh mục
+    private record Snapshot(long version, long[] ids, long[] categoryIds, ProductJson[] products,
+                            double[] prices, long[] soldQuantities, double[] ratings,
+                            int[][] orders, Map<Long, int[][]> categoryOrders) {
+
+        int compare(ProductSort sort, int a, int b) {
+            int result = switch (sort) {
+                case PRICE_ASC -> comparePrices(prices[a], prices[b], true);
+                case PRICE_DESC -> comparePrices(prices[a], prices[b], false);
+                case BEST_SELLING -> Long.compare(soldQuantities[b], soldQuantities[a]);
+                case RATING -> Double.compare(ratings[b], ratings[a]);
+                case NEWEST, DEFAULT -> 0;
+            };
+            if (result != 0) {
+                return result;
+            }
+            // Hòa thì sản phẩm mới hơn (id lớn hơn) đứng trước, riêng DEFAULT theo id tăng dần
+            return sort == ProductSort.DEFAULT ? Long.compare(ids[a], ids[b]) : Long.compare(ids[b], ids[a]);
+        }
+
+        // Sản phẩm chưa có giá luôn nằm cuối
+        private static int comparePrices(double first, double second, boolean ascending) {
+            if (Double.isNaN(first) || Double.isNaN(second)) {
+                return Boolean.compare(Double.isNaN(first), Double.isNaN(second));
+            }
+            return ascending ? Double.compare(first, second) : Double.compare(second, first);
+        }
+    }
+
+    private record Entry(long id, long categoryId, ProductJson product, double price, long soldQuantity,
+                         double rating) {
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    public long getVersion() {
+        Snapshot current = snapshot;
+        return current != null ? current.version() : 0;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        try {
+            List<Entry> entries = new ArrayList<>();
+            long afterId = 0;
+            List<Long> ids;
+            do {
+                ids = productRepository.findActiveIdsAfter(afterId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                productRepository.findAllWithWeightProductsByIdIn(ids).stream()
+                        .map(this::toEntry)
+                        .forEach(entries::add);
+                afterId = ids.get(ids.size() - 1);
+            } while (ids.size() == REBUILD_BATCH_SIZE);
+            entries.sort(Comparator.comparingLong(Entry::id));
+            swap(entries, null, null, List.of());
+            Snapshot built = snapshot;
+            catalogVersions.productsRebuilt(built.ids(), built.categoryIds(), built.products());
+            log.info("Active catalog snapshot v{} built with {} products", snapshot.version(), entries.size());
+        } catch (Exception e) {
+            log.error("Could not build active catalog snapshot", e);
+        }
+    }
+
+    // Gọi sau khi sản phẩm thay đổi; trong transaction thì đợi commit để không đọc dữ liệu chưa chốt
+    public void refresh(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        Set<Long> changedIds = new HashSet<>(productIds);
+        runAfterCommit(() -> {
+            applyChanges(changedIds);
+            publish(CatalogSync.productsChanged(changedIds));
+        });
+    }
+
+    // Dùng khi thay đổi ảnh hưởng nhiều sản phẩm cùng lúc (vd. đổi tên danh mục)
+    public void refreshAll() {
+        runAfterCommit(() -> {
+            rebuild();
+            publish(CatalogSync.allChanged());
+        });
+    }
+
+    // Thay đổi nhận từ instance khác: chỉ áp dụng tại chỗ, không publish lại
+    public void applyRemoteChanges(Collection<Long> productIds) {
+        applyChanges(productIds);
+    }
+
+    public Optional<ProductJson> findProduct(long productId) {
+        Snapshot current = snapshot;
+        int position = Arrays.binarySearch(current.ids(), productId);
+        return position >= 0 ? Optional.of(current.products()[position]) : Optional.empty();
+    }
+
+    // categoryId null là toàn bộ sản phẩm
+    public PageResponse<ProductJson> getPage(Long categoryId, ProductSort sort, int page, int size) {
+        Snapshot current = snapshot;
+        int[] positions = order(current, categoryId, sort);
+        int total = positions.length;
+        int from = (int) Math.min(total, Math.max(0L, (long) (page - 1) * size));
+        int to = (int) Math.min(total, (long) from + size);
+        List<ProductJson> elements = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            elements.add(current.products()[positions[i]]);
+        }
+        return PageResponse.<ProductJson>builder()
+                .currentPage(page)
+                .totalPages((total + size - 1) / size)
+                .totalElements(total)
+                .elements(elements)
+                .build();
+    }
+
+    // Cursor là id nên phân trang keyset luôn theo thứ tự id
+    public PageResponse<ProductJson> getPageByCursor(Long categoryId, String cursor, int size, boolean withCount) {
+        Snapshot current = snapshot;
+        int[] positions = order(current, categoryId, ProductSort.DEFAULT);
+        int total = positions.length;
+        int from = firstAfter(total, i -> current.ids()[positions[i]], KeysetPage.afterId(cursor));
+        int to = (int) Math.min(total, (long) from + size + 1);
+        List<Integer> rows = IntStream.range(from, to)
+                .map(i -> positions[i])
+                .boxed()
+                .toList();
+        return KeysetPage.toPageResponse(rows, size, position -> current.ids()[position],
+                position -> current.products()[position], withCount, () -> total);
+    }
+
+    // Giữ thứ tự id do chỉ mục (tìm kiếm, facet) trả về, bỏ qua sản phẩm không còn bán
+    public PageResponse<ProductJson> getProducts(List<Long> productIds, long totalElements, int page, int size) {
+        Snapshot current = snapshot;
+        List<ProductJson> elements = new ArrayList<>(productIds.size());
+        for (Long productId : productIds) {
+            int position = Arrays.binarySearch(current.ids(), productId);
+            if (position >= 0) {
+                elements.add(current.products()[position]);
+            }
+        }
+        return PageResponse.<ProductJson>builder()
+                .currentPage(page)
+                .totalPages((int) ((totalElements + size - 1) / size))
+                .totalElements(totalElements)
+                .elements(elements)
+                .build();
+    }
+
+    // Duyệt theo thứ tự đã sắp xếp sẵn, chỉ lấy các sản phẩm khớp bộ lọc
+    public PageResponse<ProductJson> getMatchingPage(Set<Long> matchingIds, Long categoryId, ProductSort sort,
+                                                     int page, int size) {
+        Snapshot current = snapshot;
+        int[] positions = order(current, categoryId, sort);
+        long skip = Math.max(0L, (long) (page - 1) * size);
+        List<ProductJson> elements = new ArrayList<>(size);
+        long matched = 0;
+        for (int i = 0; i < positions.length && elements.size() < size; i++) {
+            if (matchingIds.contains(current.ids()[positions[i]]) && matched++ >= skip) {
+                elements.add(current.products()[positions[i]]);
+            }
+        }
+        long totalElements = matchingIds.size();
+        return PageResponse.<ProductJson>builder()
+                .currentPage(page)
+                .totalPages((int) ((totalElements + size - 1) / size))
+                .totalElements(totalElements)
+                .elements(elements)
+                .build();
+    }
+
+    // Dùng cho đường dự phòng (chưa có snapshot) để API vẫn trả cùng kiểu dữ liệu
+    public ProductJson toJson(ProductResponse response) {
+        try {
+            return new ProductJson(objectMapper.writeValueAsString(response));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize product " + response.getId_product(), e);
+        }
+    }
+
+    public PageResponse<ProductJson> toJsonPage(PageResponse<ProductResponse> page) {
+        return PageResponse.<ProductJson>builder()
+                .currentPage(page.getCurrentPage())
+                .totalPages(page.getTotalPages())
+                .totalElements(page.getTotalElements())
+                .elements(page.getElements().stream().map(this::toJson).toList())
+                .nextCursor(page.getNextCursor())
+                .hasNext(page.getHasNext())
+                .build();
+    }
+
+    private void applyChanges(Collection<Long> productIds) {
+        pendingIds.addAll(productIds);
+        drainPending();
+    }
+
+    // Luồng vào sau lấy luôn các id mà luồng khác đã thêm trong lúc chờ khóa; luồng đó thấy hàng đợi rỗng và thoát
+    private synchronized void drainPending() {
+        Set<Long> changedIds = new HashSet<>();
+        for (Iterator<Long> iterator = pendingIds.iterator(); iterator.hasNext(); ) {
+            changedIds.add(iterator.next());
+            iterator.remove();
+        }
+        if (changedIds.isEmpty()) {
+            return;
+        }
+        Snapshot current = snapshot;
+        if (current == null) {
+            // Lần build đầu tiên sẽ đọc dữ liệu mới nhất
+            return;
+        }
+        List<Entry> replacements = productRepository.findAllWithWeightProductsByIdIn(changedIds).stream()
+                .filter(Product::isActive)
+                .map(this::toEntry)
+                .sorted(Comparator.comparingLong(Entry::id))
+                .toList();
+        if (replaceInPlace(current, changedIds, replacements)) {
+            return;
+        }
+
+        // Trộn 2 dãy đã sắp xếp: bản cũ (bỏ các id thay đổi) và các sản phẩm vừa nạp lại.
+        // remap: vị trí cũ -> vị trí mới (-1 nếu bị bỏ), để cập nhật các mảng thứ tự mà không sắp xếp lại
+        int oldSize = current.ids().length;
+        int[] remap = new int[oldSize];
+        List<Entry> entries = new ArrayList<>(oldSize + replacements.size());
+        List<Integer> insertedPositions = new ArrayList<>(replacements.size());
+        int i = 0;
+        int j = 0;
+        while (i < oldSize || j < replacements.size()) {
+            if (i < oldSize && changedIds.contains(current.ids()[i])) {
+                remap[i++] = -1;
+            } else if (j >= replacements.size() || (i < oldSize && current.ids()[i] < replacements.get(j).id())) {
+                remap[i] = entries.size();
+                entries.add(new Entry(current.ids()[i], current.categoryIds()[i], current.products()[i],
+                        current.prices()[i], current.soldQuantities()[i], current.ratings()[i]));
+                i++;
+            } else {
+                insertedPositions.add(entries.size());
+                entries.add(replacements.get(j++));
+            }
+        }
+        swap(entries, current, remap, insertedPositions);
+        recordVersions(changedIds, replacements);
+    }
+
+    // Trường hợp thường gặp nhất (tồn kho, mô tả, ảnh): không sản phẩm nào vào/ra và không khóa sắp xếp nào đổi,
+    // nên chỉ thay JSON và dùng lại nguyên các mảng thứ tự của snapshot cũ
+    private boolean replaceInPlace(Snapshot current, Set<Long> changedIds, List<Entry> replacements) {
+        if (replacements.size() != changedIds.size()) {
+            return false;
+        }
+        int[] positions = new int[replacements.size()];
+        for (int k = 0; k < positions.length; k++) {
+            Entry entry = replacements.get(k);
+            int position = Arrays.binarySearch(current.ids(), entry.id());
+            if (position < 0
+                    || current.categoryIds()[position] != entry.categoryId()
+                    || Double.compare(current.prices()[position], entry.price()) != 0
+                    || current.soldQuantities()[position] != entry.soldQuantity()
+                    || Double.compare(current.ratings()[position], entry.rating()) != 0) {
+                return false;
+            }
+            positions[k] = position;
+        }
+        ProductJson[] products = current.products().clone();
+        for (int k = 0; k < positions.length; k++) {
+            products[positions[k]] = replacements.get(k).product();
+        }
+        snapshot = new Snapshot(current.version() + 1, current.ids(), current.categoryIds(), products,
+                current.prices(), current.soldQuantities(), current.ratings(),
+                current.orders(), current.categoryOrders());
+        recordVersions(changedIds, replacements);
+        return true;
+    }
+
+    // id thay đổi mà không có trong replacements là sản phẩm không còn bán
+    private void recordVersions(Set<Long> changedIds, List<Entry> replacements) {
+        Set<Long> removedIds = new HashSet<>(changedIds);
+        for (Entry entry : replacements) {
+            removedIds.remove(entry.id());
+            catalogVersions.productChanged(entry.id(), entry.categoryId(), entry.product());
+        }
+        removedIds.forEach(productId -> catalogVersions.productChanged(productId, 0, null));
+    }
+
+    // previous null là build lại toàn bộ: sắp xếp từ đầu cho từng thứ tự
+    private void swap(List<Entry> entries, Snapshot previous, int[] remap, List<Integer> insertedPositions) {
+        int size = entries.size();
+        long[] ids = new long[size];
+        long[] categoryIds = new long[size];
+        ProductJson[] products = new ProductJson[size];
+        double[] prices = new double[size];
+        long[] soldQuantities = new long[size];
+        double[] ratings = new double[size];
+        for (int i = 0; i < size; i++) {
+            Entry entry = entries.get(i);
+            ids[i] = entry.id();
+            categoryIds[i] = entry.categoryId();
+            products[i] = entry.product();
+            prices[i] = entry.price();
+            soldQuantities[i] = entry.soldQuantity();
+            ratings[i] = entry.rating();
+        }
+        long version = snapshot != null ? snapshot.version() + 1 : 1;
+        ProductSort[] sorts = ProductSort.values();
+        int[][] orders = new int[sorts.length][];
+        Snapshot next = new Snapshot(version, ids, categoryIds, products, prices, soldQuantities, ratings,
+                orders, null);
+        for (ProductSort sort : sorts) {
+            orders[sort.ordinal()] = sort == ProductSort.DEFAULT
+                    ? IntStream.range(0, size).toArray()
+                    : previous == null
+                    ? sortPositions(next, sort, IntStream.range(0, size).boxed().toList())
+                    : mergeOrder(next, sort, previous.orders()[sort.ordinal()], remap, insertedPositions);
+        }
+        snapshot = new Snapshot(version, ids, categoryIds, products, prices, soldQuantities, ratings,
+                orders, splitByCategory(categoryIds, orders));
+    }
+
+    // Giữ nguyên thứ tự tương đối của các sản phẩm không đổi, chỉ chèn các sản phẩm vừa nạp lại vào đúng chỗ
+    private static int[] mergeOrder(Snapshot next, ProductSort sort, int[] previousOrder, int[] remap,
+                                    List<Integer> insertedPositions) {
+        int[] inserted = sortPositions(next, sort, insertedPositions);
+        int[] merged = new int[next.ids().length];
+        int count = 0;
+        int j = 0;
+        for (int oldPosition : previousOrder) {
+            int position = remap[oldPosition];
+            if (position < 0) {
+                continue;
+            }
+            while (j < inserted.length && next.compare(sort, inserted[j], position) < 0) {
+                merged[count++] = inserted[j++];
+            }
+            merged[count++] = position;
+        }
+        while (j < inserted.length) {
+            merged[count++] = inserted[j++];
+        }
+        return merged;
+    }
+
+    private static int[] sortPositions(Snapshot snapshot, ProductSort sort, List<Integer> positions) {
+        return positions.stream()
+                .sorted((a, b) -> snapshot.compare(sort, a, b))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    // Lọc thứ tự toàn cục theo danh mục: thứ tự trong từng danh mục giữ nguyên, không cần sắp xếp lại.
+    // Danh mục được đánh số liên tiếp 1 lần, sau đó mỗi thứ tự chỉ duyệt mảng int
+    private static Map<Long, int[][]> splitByCategory(long[] categoryIds, int[][] orders) {
+        Map<Long, Integer> slots = new HashMap<>();
+        int[] slotOf = new int[categoryIds.length];
+        int[] slotSizes = new int[categoryIds.length];
+        for (int position = 0; position < categoryIds.length; position++) {
+            Integer slot = slots.get(categoryIds[position]);
+            if (slot == null) {
+                slot = slots.size();
+                slots.put(categoryIds[position], slot);
+            }
+            slotOf[position] = slot;
+            slotSizes[slot]++;
+        }
+        int[][][] slotOrders = new int[slots.size()][orders.length][];
+        for (int slot = 0; slot < slotOrders.length; slot++) {
+            for (int sort = 0; sort < orders.length; sort++) {
+                slotOrders[slot][sort] = new int[slotSizes[slot]];
+            }
+        }
+        int[] filled = new int[slotOrders.length];
+        for (int sort = 0; sort < orders.length; sort++) {
+            Arrays.fill(filled, 0);
+            for (int position : orders[sort]) {
+                int slot = slotOf[position];
+                slotOrders[slot][sort][filled[slot]++] = position;
+            }
+        }
+        Map<Long, int[][]> categoryOrders = new HashMap<>();
+        slots.forEach((categoryId, slot) -> categoryOrders.put(categoryId, slotOrders[slot]));
+        return Map.copyOf(categoryOrders);
+    }
+
+    private static int[] order(Snapshot snapshot, Long categoryId, ProductSort sort) {
+        if (categoryId == null) {
+            return snapshot.orders()[sort.ordinal()];
+        }
+        int[][] categoryOrder = snapshot.categoryOrders().get(categoryId);
+        return categoryOrder != null ? categoryOrder[sort.ordinal()] : NO_POSITIONS;
+    }
+
+    private Entry toEntry(Product product) {
+        ProductResponse response = productMapper.toProductResponse(product);
+        ProductService.applyImageUrls(response);
+        long categoryId = product.getCategory() != null ? product.getCategory().getId_category() : 0;
+        double price = product.getPrice() != null ? product.getPrice() : Double.NaN;
+        return new Entry(product.getId_product(), categoryId, toJson(response), price,
+                product.getSoldQuantity(), response.getAverage_rating());
+    }
+
+    private static int firstAfter(int count, IntToLongFunction idAt, long afterId) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (idAt.applyAsLong(middle) <= afterId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Redis lỗi thì instance khác chậm cập nhật nhưng thay đổi tại chỗ vẫn giữ
+    private void publish(String message) {
+        try {
+            redisTemplate.convertAndSend(CatalogSync.CHANNEL, message);
+        } catch (Exception e) {
+            log.warn("Could not publish catalog change", e);
+        }
+    }
+
+    private static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.product_service.service;
+
+import com.example.product_service.entity.Product;
+import com.example.product_service.repository.ProductRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+// Nhận thông báo thay đổi danh mục từ các instance khác (kênh Redis CHANNEL) và áp dụng lên snapshot,
+// chỉ mục tìm kiếm, gợi ý, bộ lọc và dữ liệu tham chiếu (danh mục, loại khối lượng) của instance này.
+// Thông báo có dạng "<node>|<loại>|<id,id,...>"; thông báo do chính instance gửi bị bỏ qua vì đã áp dụng tại chỗ
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CatalogSync {
+    public static final String CHANNEL = "product-catalog-changed";
+    static final String NODE_ID = UUID.randomUUID().toString();
+    static final String PRODUCTS = "products";
+    static final String ALL = "all";
+    static final String REFERENCE = "reference";
+
+    ProductRepository productRepository;
+    ActiveCatalog activeCatalog;
+    ProductSearchIndex productSearchIndex;
+    ProductSuggestionIndex productSuggestionIndex;
+    ProductFacetIndex productFacetIndex;
+    ReferenceData referenceData;
+
+    static String productsChanged(Collection<Long> productIds) {
+        return NODE_ID + "|" + PRODUCTS + "|" + productIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    static String allChanged() {
+        return NODE_ID + "|" + ALL + "|";
+    }
+
+    static String referenceChanged() {
+        return NODE_ID + "|" + REFERENCE + "|";
+    }
+
+    public void onMessage(String message) {
+        String[] parts = message != null ? message.split("\\|", 3) : new String[0];
+        if (parts.length < 3 || NODE_ID.equals(parts[0])) {
+            return;
+        }
+        try {
+            switch (parts[1]) {
+                case PRODUCTS -> productsChangedRemotely(parseIds(parts[2]));
+                case ALL -> {
+                    productSearchIndex.rebuild();
+                    productSuggestionIndex.rebuild();
+                    productFacetIndex.rebuild();
+                    activeCatalog.rebuild();
+                }
+                case REFERENCE -> referenceData.reload();
+                default -> log.warn("Unknown catalog change {}", message);
+            }
+        } catch (Exception e) {
+            log.error("Could not apply catalog change {}", message, e);
+        }
+    }
+
+    private void productsChangedRemotely(Set<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        // Category là EAGER nên chỉ mục đọc được tên danh mục ngoài transaction
+        for (Product product : productRepository.findAllWithWeightProductsByIdIn(productIds)) {
+            productSearchIndex.index(product);
+            productSuggestionIndex.index(product);
+            productFacetIndex.index(product);
+        }
+        activeCatalog.applyRemoteChanges(productIds);
+    }
+
+    private static Set<Long> parseIds(String ids) {
+        Set<Long> productIds = new HashSet<>();
+        for (String id : ids.split(",")) {
+            if (!id.isBlank()) {
+                productIds.add(Long.parseLong(id.trim()));
+            }
+        }
+        return productIds;
+    }
+}
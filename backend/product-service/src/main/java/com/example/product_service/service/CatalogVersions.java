@@ -0,0 +1,120 @@
+package com.example.product_service.service;
+
+import com.example.product_service.dto.response.ProductJson;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Phiên bản (ETag) của danh mục sản phẩm tính từ chính nội dung: mỗi sản phẩm đang bán có mã băm 64 bit của
+// JSON trong snapshot, danh sách toàn bộ / theo danh mục dùng tổng các mã băm nên cập nhật được khi 1 sản phẩm
+// đổi mà không duyệt lại. Cùng dữ liệu thì mọi instance và mọi lần khởi động cho cùng ETag;
+// kiểm tra If-None-Match vẫn không cần đọc DB hay snapshot
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CatalogVersions {
+    // Dùng cho ETag trước khi nạp xong lần đầu, để bản trả từ DB lúc khởi động không trùng ETag với instance khác
+    final String bootId = UUID.randomUUID().toString();
+
+    // id sản phẩm -> (danh mục, mã băm)
+    final Map<Long, ProductDigest> products = new ConcurrentHashMap<>();
+    // id danh mục -> tổng mã băm các sản phẩm của danh mục
+    final Map<Long, Long> categorySums = new ConcurrentHashMap<>();
+    volatile long catalogSum;
+    volatile boolean productsLoaded;
+    volatile String categoriesHash;
+    volatile String weightTypesHash;
+
+    private record ProductDigest(long categoryId, long hash) {
+    }
+
+    // Build lại toàn bộ snapshot: các mảng cùng chỉ số như Snapshot của ActiveCatalog
+    public synchronized void productsRebuilt(long[] ids, long[] categoryIds, ProductJson[] jsons) {
+        Map<Long, ProductDigest> digests = new HashMap<>(ids.length * 2);
+        Map<Long, Long> sums = new HashMap<>();
+        long sum = 0;
+        for (int i = 0; i < ids.length; i++) {
+            long hash = hash(jsons[i].toString());
+            digests.put(ids[i], new ProductDigest(categoryIds[i], hash));
+            sums.merge(categoryIds[i], hash, Long::sum);
+            sum += hash;
+        }
+        products.keySet().retainAll(digests.keySet());
+        products.putAll(digests);
+        categorySums.keySet().retainAll(sums.keySet());
+        categorySums.putAll(sums);
+        catalogSum = sum;
+        productsLoaded = true;
+    }
+
+    // Sản phẩm vừa được nạp lại vào snapshot; json null là sản phẩm không còn bán
+    public synchronized void productChanged(long productId, long categoryId, ProductJson json) {
+        ProductDigest previous = json != null
+                ? products.put(productId, new ProductDigest(categoryId, hash(json.toString())))
+                : products.remove(productId);
+        if (previous != null) {
+            addToSums(previous.categoryId(), -previous.hash());
+        }
+        if (json != null) {
+            addToSums(categoryId, products.get(productId).hash());
+        }
+    }
+
+    // Gọi sau mỗi lần ReferenceData nạp lại (tại chỗ hoặc theo thông báo từ instance khác)
+    public void referenceDataLoaded(String categoriesContent, String weightTypesContent) {
+        categoriesHash = Long.toHexString(hash(categoriesContent));
+        weightTypesHash = Long.toHexString(hash(weightTypesContent));
+    }
+
+    public String productTag(long productId) {
+        ProductDigest digest = products.get(productId);
+        return productTag("p" + productId, digest != null ? digest.hash() : 0);
+    }
+
+    public String categoryProductsTag(long categoryId) {
+        return productTag("c" + categoryId, categorySums.getOrDefault(categoryId, 0L));
+    }
+
+    public String catalogTag() {
+        return productTag("a", catalogSum);
+    }
+
+    public String categoriesTag() {
+        return tag("k", categoriesHash != null ? categoriesHash : bootId);
+    }
+
+    public String weightTypesTag() {
+        return tag("w", weightTypesHash != null ? weightTypesHash : bootId);
+    }
+
+    private void addToSums(long categoryId, long hash) {
+        categorySums.merge(categoryId, hash, Long::sum);
+        catalogSum += hash;
+    }
+
+    private String productTag(String scope, long hash) {
+        return tag(scope, productsLoaded ? Long.toHexString(hash) : bootId);
+    }
+
+    private static String tag(String scope, String version) {
+        return "\"" + scope + "-" + version + "\"";
+    }
+
+    // 8 byte đầu của SHA-256: cùng nội dung cho cùng giá trị trên mọi JVM
+    static long hash(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest, 0, Long.BYTES).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
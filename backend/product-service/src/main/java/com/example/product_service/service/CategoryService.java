@@ -26,26 +26,40 @@ import java.util.List;
 public class CategoryService {
     CategoryRepository categoryRepository;
     CategoryMapper categoryMapper;
+    ProductSearchIndex productSearchIndex;
+    ProductSuggestionIndex productSuggestionIndex;
+    ActiveCatalog activeCatalog;
+    ReferenceData referenceData;
 
 
     // Method to fetch a category by id
     public CategoryResponse getCategoryById(Long categoryId) {
-        return categoryMapper.toCategoryResponse(categoryRepository.findById(categoryId).orElse(null));
+        return referenceData.findCategory(categoryId).orElse(null);
     }
     // Method to add a new category
     public CategoryResponse createCategory(CategoryRequest categoryRequest) {
         log.info(categoryRequest.toString());
         Category category = categoryRepository.save(categoryMapper.toCategory(categoryRequest));
+        referenceData.changed();
         return categoryMapper.toCategoryResponse(category);
     }
     // Method to update a category
+    // Tên danh mục nằm trong ProductResponse nên dựng lại cả snapshot sản phẩm
     public CategoryResponse updateCategory(Long categoryId, CategoryRequest categoryRequest) {
         Category category = categoryMapper.updateCategory(categoryId, categoryRequest);
-        return categoryMapper.toCategoryResponse(categoryRepository.save(category));
+        CategoryResponse response = categoryMapper.toCategoryResponse(categoryRepository.save(category));
+        referenceData.changed();
+        // Tên danh mục được index cùng sản phẩm
+        productSearchIndex.rebuild();
+        productSuggestionIndex.rebuild();
+        activeCatalog.refreshAll();
+        return response;
     }
     // Method to delete a category
     public void deleteCategory(Long categoryId) {
         categoryRepository.deleteById(categoryId);
+        referenceData.changed();
+        activeCatalog.refreshAll();
     }
     public PageResponse<CategoryResponse> searchCategories(String keyword, int page, int size){
         Pageable pageable = PageRequest.of(page - 1, size);
@@ -63,20 +77,10 @@ public class CategoryService {
                 .elements(categoryResponses)
                 .build();
     }
+    public PageResponse<CategoryResponse> getAllCategoriesByCursor(String cursor, int size, boolean withCount) {
+        return referenceData.getCategoryPageByCursor(cursor, size, withCount);
+    }
     public PageResponse<CategoryResponse> getAllCategories(int page, int size) {
-        Pageable pageable = PageRequest.of(page - 1, size);
-        Page<Category> categoryPage = categoryRepository.findAll(pageable);
-
-        List<CategoryResponse> categoryResponses = categoryPage.getContent()
-                .stream()
-                .map(categoryMapper::toCategoryResponse)
-                .toList();
-
-        return PageResponse.<CategoryResponse>builder()
-                .currentPage(page)
-                .totalPages(categoryPage.getTotalPages())
-                .totalElements(categoryPage.getTotalElements())
-                .elements(categoryResponses)
-                .build();
+        return referenceData.getCategoryPage(page, size);
     }
 }
@@ -0,0 +1,367 @@
+package com.example.product_service.service;
+
+import com.example.product_service.exception.AppException;
+import com.example.product_service.exception.ErrorCode;
+import com.example.product_service.repository.ProductRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ImageStorageService {
+    ProductRepository productRepository;
+    ThreadPoolTaskExecutor imageTaskExecutor;
+    ActiveCatalog activeCatalog;
+    // Khóa theo tên file: ghi ảnh + lưu sản phẩm tham chiếu tới ảnh và kiểm tra + xóa ảnh cũ dùng chung khóa,
+    // nên ảnh vừa được sản phẩm khác dùng lại không bị xóa mất
+    Lock[] fileLocks = IntStream.range(0, LOCK_STRIPES).mapToObj(i -> new ReentrantLock()).toArray(Lock[]::new);
+
+    @NonFinal
+    @Value("${image.upload-dir}")
+    String uploadDir;
+
+    static final long TRANSFER_CHUNK = 1024 * 1024;
+    static final int LOCK_STRIPES = 64;
+    static final int BACKFILL_BATCH_SIZE = 200;
+    static final float JPEG_QUALITY = 0.85f;
+    static final Pattern SAFE_FILE_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+    static final Pattern CONTENT_ADDRESSED_NAME =
+            Pattern.compile("[0-9a-f]{64}(_(thumb|medium|large))?\\.(jpg|png|webp)");
+    static final Map<String, String> EXTENSIONS = Map.of(
+            "image/jpeg", "jpg",
+            "image/png", "png",
+            "image/webp", "webp");
+
+    public enum Variant {
+        THUMBNAIL("thumb", 200),
+        MEDIUM("medium", 600),
+        LARGE("large", 1200);
+
+        final String suffix;
+        final int maxDimension;
+
+        Variant(String suffix, int maxDimension) {
+            this.suffix = suffix;
+            this.maxDimension = maxDimension;
+        }
+    }
+
+    // Ghi file upload ra đĩa theo luồng, đặt tên theo SHA-256 nội dung nên ảnh trùng chỉ lưu 1 lần.
+    // save lưu sản phẩm với tên file (null nếu không có file) và chạy trong khóa của file đó
+    public <T> T store(MultipartFile file, Function<String, T> save) {
+        if (file == null || file.isEmpty()) {
+            return save.apply(null);
+        }
+        String extension = EXTENSIONS.get(file.getContentType());
+        if (extension == null) {
+            throw new AppException(ErrorCode.INVALID_FILE_TYPE);
+        }
+
+        Path tempFile = null;
+        try {
+            Path directory = getUploadPath();
+            tempFile = Files.createTempFile(directory, "upload-", ".tmp");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest);
+                 ReadableByteChannel source = Channels.newChannel(in);
+                 FileChannel target = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                long position = 0;
+                long transferred;
+                while ((transferred = target.transferFrom(source, position, TRANSFER_CHUNK)) > 0) {
+                    position += transferred;
+                }
+            }
+
+            String fileName = HexFormat.of().formatHex(digest.digest()) + "." + extension;
+            Path target = directory.resolve(fileName);
+            Lock lock = lockFor(fileName);
+            lock.lock();
+            try {
+                boolean created = false;
+                if (Files.exists(target)) {
+                    log.debug("Image {} already stored, reusing it", fileName);
+                } else {
+                    Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+                    created = true;
+                }
+                try {
+                    return save.apply(fileName);
+                } catch (RuntimeException e) {
+                    // Lưu sản phẩm thất bại thì không để lại file mới không ai dùng
+                    if (created) {
+                        Files.deleteIfExists(target);
+                    }
+                    throw e;
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Failed to store file", e);
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    log.warn("Could not delete temporary upload {}", tempFile, e);
+                }
+            }
+        }
+    }
+
+    // Tạo các bản thu nhỏ trên pool riêng rồi ghi tên file vào Product
+    public void generateVariantsAsync(long productId, String fileName) {
+        if (fileName == null) {
+            return;
+        }
+        if (variantsExist(fileName)) {
+            recordVariants(productId, fileName);
+            return;
+        }
+        imageTaskExecutor.execute(() -> {
+            try {
+                generateVariants(fileName);
+                recordVariants(productId, fileName);
+            } catch (Exception e) {
+                log.error("Failed to generate image variants for product {} from {}", productId, fileName, e);
+            }
+        });
+    }
+
+    // Ảnh dùng chung nội dung giữa nhiều sản phẩm nên chỉ xóa khi không còn sản phẩm nào tham chiếu
+    public void deleteIfUnused(String fileName) {
+        if (fileName == null) {
+            return;
+        }
+        Lock lock = lockFor(fileName);
+        lock.lock();
+        try {
+            if (productRepository.existsByImage(fileName)) {
+                return;
+            }
+            Path directory = getUploadPath();
+            Files.deleteIfExists(directory.resolve(fileName));
+            for (Variant variant : Variant.values()) {
+                Files.deleteIfExists(directory.resolve(variantName(fileName, variant, "jpg")));
+                Files.deleteIfExists(directory.resolve(variantName(fileName, variant, "webp")));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete old image file: " + fileName, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Chạy 1 lần khi khởi động: tạo bản thu nhỏ cho ảnh upload trước khi có tính năng này.
+    // Chỉ chọn sản phẩm chưa có bản thu nhỏ nên các lần khởi động sau gần như không làm gì
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillVariants() {
+        imageTaskExecutor.execute(() -> {
+            try {
+                int queued = 0;
+                long afterId = 0;
+                List<Object[]> batch;
+                do {
+                    batch = productRepository.findMissingImageVariants(afterId,
+                            PageRequest.of(0, BACKFILL_BATCH_SIZE));
+                    for (Object[] row : batch) {
+                        long productId = ((Number) row[0]).longValue();
+                        String fileName = (String) row[1];
+                        afterId = productId;
+                        if (resolve(fileName) == null) {
+                            log.warn("Image {} of product {} is missing, skipping its variants", fileName, productId);
+                            continue;
+                        }
+                        // Hàng đợi đầy thì CallerRunsPolicy chạy ngay trên luồng này, tự giới hạn tốc độ
+                        generateVariantsAsync(productId, fileName);
+                        queued++;
+                    }
+                } while (batch.size() == BACKFILL_BATCH_SIZE);
+                if (queued > 0) {
+                    log.info("Backfilling image variants for {} products", queued);
+                }
+            } catch (Exception e) {
+                log.error("Could not backfill image variants", e);
+            }
+        });
+    }
+
+    public Path getUploadPath() throws IOException {
+        Path path = Paths.get(uploadDir);
+        if (!Files.exists(path)) {
+            Files.createDirectories(path);
+        }
+        return path;
+    }
+
+    // Chỉ nhận tên file nằm ngay trong thư mục upload, chặn path traversal
+    public Path resolve(String fileName) {
+        if (fileName == null || !SAFE_FILE_NAME.matcher(fileName).matches()) {
+            return null;
+        }
+        Path directory = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Path path = directory.resolve(fileName).normalize();
+        return path.getParent().equals(directory) && Files.isRegularFile(path) ? path : null;
+    }
+
+    // Tên file theo hash nội dung: nội dung không bao giờ đổi nên được cache vĩnh viễn
+    public static boolean isContentAddressed(String fileName) {
+        return CONTENT_ADDRESSED_NAME.matcher(fileName).matches();
+    }
+
+    public static String variantName(String fileName, Variant variant, String extension) {
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot >= 0 ? fileName.substring(0, dot) : fileName;
+        return baseName + "_" + variant.suffix + "." + extension;
+    }
+
+    private Lock lockFor(String fileName) {
+        return fileLocks[Math.floorMod(fileName.hashCode(), LOCK_STRIPES)];
+    }
+
+    private boolean variantsExist(String fileName) {
+        Path directory = Paths.get(uploadDir);
+        for (Variant variant : Variant.values()) {
+            if (!Files.exists(directory.resolve(variantName(fileName, variant, "jpg")))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void generateVariants(String fileName) throws IOException {
+        Path directory = getUploadPath();
+        // Đọc ảnh gốc có subsampling theo cỡ lớn nhất để không giải nén toàn bộ ảnh độ phân giải cao
+        BufferedImage source = readForMaxDimension(directory.resolve(fileName), Variant.LARGE.maxDimension);
+        if (source == null) {
+            throw new IOException("Unsupported image format: " + fileName);
+        }
+        // JDK không có encoder WebP; chỉ tạo bản .webp khi có plugin ImageIO hỗ trợ trên classpath
+        boolean webpSupported = ImageIO.getImageWritersByFormatName("webp").hasNext();
+        // Thu nhỏ dần từ lớn đến nhỏ, mỗi bước dùng kết quả trước đó làm nguồn
+        for (int i = Variant.values().length - 1; i >= 0; i--) {
+            Variant variant = Variant.values()[i];
+            source = resize(source, variant.maxDimension);
+            writeAtomically(source, "jpeg", directory, variantName(fileName, variant, "jpg"));
+            if (webpSupported) {
+                writeAtomically(source, "webp", directory, variantName(fileName, variant, "webp"));
+            }
+        }
+    }
+
+    private void recordVariants(long productId, String fileName) {
+        productRepository.updateImageVariants(productId, fileName,
+                variantName(fileName, Variant.THUMBNAIL, "jpg"),
+                variantName(fileName, Variant.MEDIUM, "jpg"),
+                variantName(fileName, Variant.LARGE, "jpg"));
+        activeCatalog.refresh(List.of(productId));
+    }
+
+    private BufferedImage readForMaxDimension(Path path, int maxDimension) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(path.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int step = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / maxDimension);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage resize(BufferedImage source, int maxDimension) {
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        // JPEG không có kênh alpha nên phủ nền trắng cho ảnh PNG trong suốt
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private void writeAtomically(BufferedImage image, String format, Path directory, String fileName)
+            throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        Path tempFile = Files.createTempFile(directory, "variant-", ".tmp");
+        try {
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(tempFile.toFile())) {
+                writer.setOutput(out);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                if (param.canWriteCompressed()) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    if (param.getCompressionType() == null) {
+                        param.setCompressionType(param.getCompressionTypes()[0]);
+                    }
+                    param.setCompressionQuality(JPEG_QUALITY);
+                }
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+            Files.move(tempFile, directory.resolve(fileName),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            writer.dispose();
+            Files.deleteIfExists(tempFile);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.product_service.service;
+
+import com.example.product_service.dto.response.PageResponse;
+import com.example.product_service.exception.AppException;
+import com.example.product_service.exception.ErrorCode;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+// Phân trang keyset (cursor): cursor là id cuối cùng của trang trước, chuỗi rỗng là trang đầu.
+// Trang cuối không có nextCursor và hasNext = false
+final class KeysetPage {
+    private KeysetPage() {
+    }
+
+    static long afterId(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(cursor.trim());
+        } catch (NumberFormatException e) {
+            throw new AppException(ErrorCode.INVALID_CURSOR);
+        }
+    }
+
+    // Lấy dư 1 dòng để biết còn trang sau hay không
+    static Pageable limit(int size) {
+        return PageRequest.of(0, size + 1);
+    }
+
+    static <E, R> PageResponse<R> toPageResponse(List<E> rows, int size, ToLongFunction<E> idOf,
+                                                 Function<E, R> mapper, boolean withCount, LongSupplier counter) {
+        boolean hasNext = rows.size() > size;
+        List<E> pageRows = hasNext ? rows.subList(0, size) : rows;
+        long totalElements = withCount ? counter.getAsLong() : -1;
+        return PageResponse.<R>builder()
+                .currentPage(0)
+                .totalPages(withCount ? (int) ((totalElements + size - 1) / size) : -1)
+                .totalElements(totalElements)
+                .elements(pageRows.stream().map(mapper).toList())
+                .nextCursor(hasNext ? String.valueOf(idOf.applyAsLong(pageRows.get(pageRows.size() - 1))) : null)
+                .hasNext(hasNext)
+                .build();
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.product_service.service;
+
+import com.example.product_service.dto.request.FilterRequest;
+import com.example.product_service.dto.response.FacetCountResponse;
+import com.example.product_service.entity.Product;
+import com.example.product_service.repository.ProductRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Bộ lọc sản phẩm theo facet trong bộ nhớ: mỗi giá trị brand/origin/category/organic có 1 BitSet
+// các sản phẩm, giá được index bằng TreeMap. Lọc = giao các BitSet, đếm facet trên kết quả
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductFacetIndex {
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    final ProductRepository productRepository;
+    final ProductSearchIndex productSearchIndex;
+
+    final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Mỗi sản phẩm có 1 số thứ tự (ordinal) là vị trí bit trong các BitSet
+    final Map<Long, Integer> ordinals = new HashMap<>();
+    final List<Document> documents = new ArrayList<>();
+    final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+
+    final BitSet active = new BitSet();
+    final BitSet organic = new BitSet();
+    final Map<String, BitSet> brands = new HashMap<>();
+    final Map<String, BitSet> origins = new HashMap<>();
+    final Map<Long, BitSet> categories = new HashMap<>();
+    final NavigableMap<Double, BitSet> prices = new TreeMap<>();
+    // giá trị đã bỏ dấu -> giá trị hiển thị
+    final Map<String, String> labels = new HashMap<>();
+    volatile boolean ready;
+
+    private enum Facet {
+        ORGANIC, CATEGORY, BRAND, ORIGIN, PRICE, QUERY
+    }
+
+    private record Document(long productId, String brand, String origin, Long categoryId,
+                            boolean organic, Double price) {
+    }
+
+    public record FilterResult(List<Long> productIds, long totalElements) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            ordinals.clear();
+            documents.clear();
+            freeOrdinals.clear();
+            active.clear();
+            organic.clear();
+            brands.clear();
+            origins.clear();
+            categories.clear();
+            prices.clear();
+            labels.clear();
+            int page = 0;
+            Page<Product> productPage;
+            do {
+                productPage = productRepository.findAll(PageRequest.of(page++, REBUILD_BATCH_SIZE));
+                productPage.forEach(this::addToIndex);
+            } while (productPage.hasNext());
+            ready = true;
+            log.info("Product facet index built with {} products", ordinals.size());
+        } catch (Exception e) {
+            log.error("Could not build product facet index", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void index(Product product) {
+        lock.writeLock().lock();
+        try {
+            removeFromIndex(product.getId_product());
+            addToIndex(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Sản phẩm đang active khớp bộ lọc, sắp xếp theo id như truy vấn cũ
+    public FilterResult filter(FilterRequest filter, int page, int size) {
+        lock.readLock().lock();
+        try {
+            BitSet matches = match(filter);
+            List<Long> productIds = matches.stream()
+                    .mapToObj(ordinal -> documents.get(ordinal).productId())
+                    .sorted()
+                    .skip((long) (page - 1) * size)
+                    .limit(size)
+                    .toList();
+            return new FilterResult(productIds, matches.cardinality());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Toàn bộ id khớp bộ lọc, dùng khi sắp xếp theo thứ tự có sẵn trong ActiveCatalog
+    public Set<Long> matchingIds(FilterRequest filter) {
+        lock.readLock().lock();
+        try {
+            BitSet matches = match(filter);
+            Set<Long> productIds = new HashSet<>(matches.cardinality() * 2);
+            for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+                productIds.add(documents.get(ordinal).productId());
+            }
+            return productIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Đếm facet kiểu disjunctive: số đếm của mỗi nhóm bỏ qua điều kiện lọc của chính nhóm đó,
+    // để đã chọn brand A vẫn thấy số sản phẩm của brand B khi đổi lựa chọn
+    public FacetCountResponse countFacets(FilterRequest filter) {
+        lock.readLock().lock();
+        try {
+            Map<Facet, BitSet> constraints = constraints(filter);
+            BitSet matches = match(constraints, null);
+
+            Map<String, Long> brandCounts = new TreeMap<>();
+            BitSet brandMatches = match(constraints, Facet.BRAND, matches);
+            for (int ordinal = brandMatches.nextSetBit(0); ordinal >= 0; ordinal = brandMatches.nextSetBit(ordinal + 1)) {
+                String brand = documents.get(ordinal).brand();
+                if (brand != null) {
+                    brandCounts.merge(labels.get(brand), 1L, Long::sum);
+                }
+            }
+            Map<String, Long> originCounts = new TreeMap<>();
+            BitSet originMatches = match(constraints, Facet.ORIGIN, matches);
+            for (int ordinal = originMatches.nextSetBit(0); ordinal >= 0; ordinal = originMatches.nextSetBit(ordinal + 1)) {
+                String origin = documents.get(ordinal).origin();
+                if (origin != null) {
+                    originCounts.merge(labels.get(origin), 1L, Long::sum);
+                }
+            }
+            Map<Long, Long> categoryCounts = new TreeMap<>();
+            BitSet categoryMatches = match(constraints, Facet.CATEGORY, matches);
+            for (int ordinal = categoryMatches.nextSetBit(0); ordinal >= 0;
+                 ordinal = categoryMatches.nextSetBit(ordinal + 1)) {
+                Long categoryId = documents.get(ordinal).categoryId();
+                if (categoryId != null) {
+                    categoryCounts.merge(categoryId, 1L, Long::sum);
+                }
+            }
+            BitSet organicMatches = match(constraints, Facet.ORGANIC, matches);
+            BitSet organicOnly = (BitSet) organicMatches.clone();
+            organicOnly.and(organic);
+            long organicCount = organicOnly.cardinality();
+            Double minPrice = null;
+            Double maxPrice = null;
+            BitSet priceMatches = match(constraints, Facet.PRICE, matches);
+            for (int ordinal = priceMatches.nextSetBit(0); ordinal >= 0; ordinal = priceMatches.nextSetBit(ordinal + 1)) {
+                Double price = documents.get(ordinal).price();
+                if (price != null) {
+                    minPrice = minPrice == null ? price : Math.min(minPrice, price);
+                    maxPrice = maxPrice == null ? price : Math.max(maxPrice, price);
+                }
+            }
+            return FacetCountResponse.builder()
+                    .totalElements(matches.cardinality())
+                    .brands(brandCounts)
+                    .origins(originCounts)
+                    .categories(categoryCounts)
+                    .organic(organicCount)
+                    .nonOrganic(organicMatches.cardinality() - organicCount)
+                    .minPrice(minPrice)
+                    .maxPrice(maxPrice)
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private BitSet match(FilterRequest filter) {
+        return match(constraints(filter), null);
+    }
+
+    // Giao các điều kiện trừ nhóm excluded; nhóm đó không được lọc thì dùng lại kết quả đầy đủ
+    private BitSet match(Map<Facet, BitSet> constraints, Facet excluded, BitSet fullMatch) {
+        return constraints.containsKey(excluded) ? match(constraints, excluded) : fullMatch;
+    }
+
+    private BitSet match(Map<Facet, BitSet> constraints, Facet excluded) {
+        BitSet matches = (BitSet) active.clone();
+        constraints.forEach((facet, bits) -> {
+            if (facet != excluded) {
+                matches.and(bits);
+            }
+        });
+        return matches;
+    }
+
+    // Tập sản phẩm thỏa từng điều kiện lọc có trong request
+    private Map<Facet, BitSet> constraints(FilterRequest filter) {
+        Map<Facet, BitSet> constraints = new EnumMap<>(Facet.class);
+        if (filter.getOrganic() != null) {
+            if (filter.getOrganic()) {
+                constraints.put(Facet.ORGANIC, organic);
+            } else {
+                BitSet nonOrganic = (BitSet) active.clone();
+                nonOrganic.andNot(organic);
+                constraints.put(Facet.ORGANIC, nonOrganic);
+            }
+        }
+        if (filter.getCategoryId() != null && filter.getCategoryId() > 0) {
+            constraints.put(Facet.CATEGORY, categories.getOrDefault(filter.getCategoryId(), new BitSet()));
+        }
+        if (filter.getBrand() != null && !filter.getBrand().isBlank()) {
+            constraints.put(Facet.BRAND, brands.getOrDefault(key(filter.getBrand()), new BitSet()));
+        }
+        if (filter.getOrigin() != null && !filter.getOrigin().isBlank()) {
+            constraints.put(Facet.ORIGIN, origins.getOrDefault(key(filter.getOrigin()), new BitSet()));
+        }
+        if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
+            BitSet priceMatches = new BitSet();
+            Double minPrice = filter.getMinPrice();
+            Double maxPrice = filter.getMaxPrice();
+            // Khoảng giá ngược (min > max) không khớp sản phẩm nào, như câu truy vấn DB
+            if (minPrice == null || maxPrice == null || minPrice <= maxPrice) {
+                NavigableMap<Double, BitSet> range = prices;
+                if (minPrice != null) {
+                    range = range.tailMap(minPrice, true);
+                }
+                if (maxPrice != null) {
+                    range = range.headMap(maxPrice, true);
+                }
+                range.values().forEach(priceMatches::or);
+            }
+            constraints.put(Facet.PRICE, priceMatches);
+        }
+        if (filter.getQuery() != null && !filter.getQuery().isBlank()) {
+            BitSet queryMatches = new BitSet();
+            for (Long productId : productSearchIndex.matchingIds(filter.getQuery())) {
+                Integer ordinal = ordinals.get(productId);
+                if (ordinal != null) {
+                    queryMatches.set(ordinal);
+                }
+            }
+            constraints.put(Facet.QUERY, queryMatches);
+        }
+        return constraints;
+    }
+
+    private void addToIndex(Product product) {
+        int ordinal = freeOrdinals.isEmpty() ? documents.size() : freeOrdinals.pop();
+        Document document = new Document(product.getId_product(),
+                labelKey(product.getBrand()),
+                labelKey(product.getOrigin()),
+                product.getCategory() != null ? product.getCategory().getId_category() : null,
+                Boolean.TRUE.equals(product.getOrganic()),
+                product.getPrice());
+        if (ordinal == documents.size()) {
+            documents.add(document);
+        } else {
+            documents.set(ordinal, document);
+        }
+        ordinals.put(document.productId(), ordinal);
+
+        active.set(ordinal, product.isActive());
+        organic.set(ordinal, document.organic());
+        if (document.brand() != null) {
+            brands.computeIfAbsent(document.brand(), k -> new BitSet()).set(ordinal);
+        }
+        if (document.origin() != null) {
+            origins.computeIfAbsent(document.origin(), k -> new BitSet()).set(ordinal);
+        }
+        if (document.categoryId() != null) {
+            categories.computeIfAbsent(document.categoryId(), k -> new BitSet()).set(ordinal);
+        }
+        if (document.price() != null) {
+            prices.computeIfAbsent(document.price(), k -> new BitSet()).set(ordinal);
+        }
+    }
+
+    private void removeFromIndex(long productId) {
+        Integer ordinal = ordinals.remove(productId);
+        if (ordinal == null) {
+            return;
+        }
+        Document document = documents.get(ordinal);
+        active.clear(ordinal);
+        organic.clear(ordinal);
+        clearBit(brands, document.brand(), ordinal);
+        clearBit(origins, document.origin(), ordinal);
+        clearBit(categories, document.categoryId(), ordinal);
+        clearBit(prices, document.price(), ordinal);
+        pruneLabel(document.brand());
+        pruneLabel(document.origin());
+        freeOrdinals.push(ordinal);
+    }
+
+    private static <K> void clearBit(Map<K, BitSet> postings, K key, int ordinal) {
+        if (key == null) {
+            return;
+        }
+        BitSet bits = postings.get(key);
+        if (bits != null) {
+            bits.clear(ordinal);
+            if (bits.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    // Bỏ nhãn khi không còn sản phẩm nào dùng giá trị đó (brand và origin dùng chung bảng nhãn)
+    private void pruneLabel(String key) {
+        if (key != null && !brands.containsKey(key) && !origins.containsKey(key)) {
+            labels.remove(key);
+        }
+    }
+
+    // Lưu nhãn hiển thị đầu tiên gặp cho mỗi giá trị facet
+    private String labelKey(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String key = key(value);
+        labels.putIfAbsent(key, value.trim());
+        return key;
+    }
+
+    private static String key(String value) {
+        return String.join(" ", ProductSearchIndex.tokenize(value));
+    }
+}
@@ -0,0 +1,509 @@
+package com.example.product_service.service;
+
+import com.example.product_service.dto.request.ProductRequest;
+import com.example.product_service.dto.request.WeightTypeRequest;
+import com.example.product_service.dto.response.ImportRowError;
+import com.example.product_service.dto.response.ProductImportResponse;
+import com.example.product_service.entity.Product;
+import com.example.product_service.repository.ProductRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Nhập/xuất sản phẩm theo lô. File xuất có cột id_product nên nhập lại file đó sẽ cập nhật đúng các sản phẩm
+// (upsert theo id); dòng không có id_product (hoặc 0) tạo sản phẩm mới. Khối lượng có trong file được cập nhật
+// tồn kho hoặc thêm mới, khối lượng không có trong file được giữ nguyên
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ProductImportService {
+    ProductRepository productRepository;
+    ReferenceData referenceData;
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate transactionTemplate;
+    ObjectMapper objectMapper;
+    ProductSearchIndex productSearchIndex;
+    ProductSuggestionIndex productSuggestionIndex;
+    ProductFacetIndex productFacetIndex;
+    ActiveCatalog activeCatalog;
+    StockWatch stockWatch;
+
+    @NonFinal
+    @Value("${catalog.import.batch-size:500}")
+    int batchSize;
+
+    @NonFinal
+    @Value("${catalog.export.page-size:500}")
+    int exportPageSize;
+
+    static final int MAX_REPORTED_ERRORS = 1000;
+    // Cột weights có dạng "0.5:100|1:50" (khối lượng:tồn kho)
+    static final List<String> CSV_COLUMNS = List.of("id_product", "name", "price", "oldPrice", "description",
+            "id_category", "organic", "origin", "packaging", "brand", "howToUse", "howToPreserve", "active", "weights");
+
+    static final String INSERT_PRODUCT = "INSERT INTO product (name, price, old_price, description, " +
+            "category_id_category, organic, origin, packaging, brand, how_to_use, how_to_preserve, is_active) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // Dòng có id_product: cập nhật sản phẩm đó (hoặc tạo với đúng id nếu chưa có),
+    // không đụng tới ảnh, số đã bán và đánh giá
+    static final String UPSERT_PRODUCT = "INSERT INTO product (name, price, old_price, description, " +
+            "category_id_category, organic, origin, packaging, brand, how_to_use, how_to_preserve, is_active, " +
+            "id_product) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE " +
+            "name = VALUES(name), price = VALUES(price), old_price = VALUES(old_price), " +
+            "description = VALUES(description), category_id_category = VALUES(category_id_category), " +
+            "organic = VALUES(organic), origin = VALUES(origin), packaging = VALUES(packaging), " +
+            "brand = VALUES(brand), how_to_use = VALUES(how_to_use), how_to_preserve = VALUES(how_to_preserve), " +
+            "is_active = VALUES(is_active)";
+    static final String INSERT_WEIGHT_PRODUCT =
+            "INSERT INTO weight_product (product_id, weight_type_id, stock) VALUES (?, ?, ?)";
+    static final String UPDATE_WEIGHT_STOCK =
+            "UPDATE weight_product SET stock = ? WHERE product_id = ? AND weight_type_id = ?";
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    private record ImportRow(long row, ProductRequest request, List<long[]> weights) {
+    }
+
+    private static class ImportState {
+        final Set<Long> categoryIds;
+        final Map<Double, Long> weightTypeIds;
+        final List<ImportRow> batch = new ArrayList<>();
+        final List<ImportRowError> errors = new ArrayList<>();
+        long totalRows;
+        long importedRows;
+        long failedRows;
+
+        ImportState(Set<Long> categoryIds, Map<Double, Long> weightTypeIds) {
+            this.categoryIds = categoryIds;
+            this.weightTypeIds = weightTypeIds;
+        }
+
+        void fail(long row, String message) {
+            failedRows++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportRowError(row, message));
+            }
+        }
+    }
+
+    // Đọc từng dòng và ghi theo lô, dữ liệu danh mục/khối lượng tra trong bộ nhớ thay vì query mỗi dòng
+    public ProductImportResponse importProducts(InputStream in, Format format) throws IOException {
+        ImportState state = new ImportState(referenceData.getCategoryIds(), referenceData.getWeightTypeIdsByValue());
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            readCsv(reader, state);
+        } else {
+            readNdjson(reader, state);
+        }
+        flush(state);
+        log.info("Imported {} of {} product rows, {} failed", state.importedRows, state.totalRows, state.failedRows);
+        return ProductImportResponse.builder()
+                .totalRows(state.totalRows)
+                .importedRows(state.importedRows)
+                .failedRows(state.failedRows)
+                .errors(state.errors)
+                .build();
+    }
+
+    // Duyệt theo keyset từng trang, mỗi trang được giải phóng sau khi ghi ra response
+    public void exportProducts(OutputStream out, Format format) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            CsvCodec.writeRecord(writer, CSV_COLUMNS);
+        }
+        long afterId = 0;
+        List<Long> ids;
+        do {
+            ids = productRepository.findIdsAfter(afterId, PageRequest.of(0, exportPageSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            List<Product> products = new ArrayList<>(productRepository.findAllWithWeightProductsByIdIn(ids));
+            products.sort(Comparator.comparingLong(Product::getId_product));
+            for (Product product : products) {
+                if (format == Format.CSV) {
+                    CsvCodec.writeRecord(writer, toCsvRecord(product));
+                } else {
+                    writer.write(objectMapper.writeValueAsString(toRequest(product)));
+                    writer.write('\n');
+                }
+            }
+            writer.flush();
+            afterId = ids.get(ids.size() - 1);
+        } while (ids.size() == exportPageSize);
+        writer.flush();
+    }
+
+    private void readCsv(BufferedReader reader, ImportState state) throws IOException {
+        List<String> header = CsvCodec.readRecord(reader);
+        if (header == null) {
+            return;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().replace("\uFEFF", ""), i);
+        }
+        long row = 1;
+        List<String> record;
+        while ((record = CsvCodec.readRecord(reader)) != null) {
+            row++;
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue;
+            }
+            state.totalRows++;
+            try {
+                accept(state, row, fromCsvRecord(record, columns));
+            } catch (IllegalArgumentException e) {
+                state.fail(row, e.getMessage());
+            }
+        }
+    }
+
+    private void readNdjson(BufferedReader reader, ImportState state) throws IOException {
+        long row = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            row++;
+            if (line.isBlank()) {
+                continue;
+            }
+            state.totalRows++;
+            try {
+                accept(state, row, objectMapper.readValue(line, ProductRequest.class));
+            } catch (JsonProcessingException e) {
+                state.fail(row, "Invalid JSON: " + e.getOriginalMessage());
+            } catch (IllegalArgumentException e) {
+                state.fail(row, e.getMessage());
+            }
+        }
+    }
+
+    private void accept(ImportState state, long row, ProductRequest request) {
+        if (request.getName() == null || request.getName().isBlank()) {
+            throw new IllegalArgumentException("Name is required");
+        }
+        if (request.getPrice() == null || request.getPrice() < 0) {
+            throw new IllegalArgumentException("Price must be a non-negative number");
+        }
+        if (!state.categoryIds.contains(request.getId_category())) {
+            throw new IllegalArgumentException("Category " + request.getId_category() + " not found");
+        }
+        List<long[]> weights = new ArrayList<>();
+        if (request.getWeightTypes() != null) {
+            for (WeightTypeRequest weightType : request.getWeightTypes()) {
+                Long weightTypeId = state.weightTypeIds.get(weightType.getWeight());
+                if (weightTypeId == null) {
+                    throw new IllegalArgumentException("Weight type " + weightType.getWeight() + " not found");
+                }
+                if (weightType.getStock() < 0) {
+                    throw new IllegalArgumentException("Stock must not be negative");
+                }
+                weights.add(new long[]{weightTypeId, weightType.getStock()});
+            }
+        }
+        state.batch.add(new ImportRow(row, request, weights));
+        if (state.batch.size() >= batchSize) {
+            flush(state);
+        }
+    }
+
+    // Mỗi lô là 1 transaction riêng: lô lỗi không làm mất các lô đã ghi trước đó
+    private void flush(ImportState state) {
+        if (state.batch.isEmpty()) {
+            return;
+        }
+        List<ImportRow> rows = List.copyOf(state.batch);
+        state.batch.clear();
+        List<ImportRow> inserts = rows.stream().filter(row -> row.request().getId_product() <= 0).toList();
+        List<ImportRow> upserts = rows.stream().filter(row -> row.request().getId_product() > 0).toList();
+        try {
+            List<Long> productIds = transactionTemplate.execute(status ->
+                    jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+                        List<Long> ids = new ArrayList<>(rows.size());
+                        ids.addAll(insertProducts(connection, inserts));
+                        ids.addAll(upsertProducts(connection, upserts));
+                        return ids;
+                    }));
+            state.importedRows += rows.size();
+            index(productIds);
+            activeCatalog.refresh(productIds);
+            // Tồn kho đặt lại theo file: đọc lại mức của cả lô bằng 1 query
+            stockWatch.productsImported(productIds);
+        } catch (DataAccessException e) {
+            log.warn("Import batch of {} rows failed", rows.size(), e);
+            String message = "Batch rejected by database: " + e.getMostSpecificCause().getMessage();
+            rows.forEach(row -> state.fail(row.row(), message));
+        }
+    }
+
+    private List<Long> insertProducts(Connection connection, List<ImportRow> rows) throws SQLException {
+        List<Long> ids = new ArrayList<>(rows.size());
+        if (rows.isEmpty()) {
+            return ids;
+        }
+        try (PreparedStatement statement =
+                     connection.prepareStatement(INSERT_PRODUCT, Statement.RETURN_GENERATED_KEYS)) {
+            for (ImportRow row : rows) {
+                bindProduct(statement, row.request());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                while (keys.next()) {
+                    ids.add(keys.getLong(1));
+                }
+            }
+        }
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_WEIGHT_PRODUCT)) {
+            for (int i = 0; i < rows.size(); i++) {
+                for (long[] weight : rows.get(i).weights()) {
+                    bindWeight(statement, ids.get(i), weight);
+                    statement.addBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+        return ids;
+    }
+
+    private List<Long> upsertProducts(Connection connection, List<ImportRow> rows) throws SQLException {
+        List<Long> ids = rows.stream().map(row -> row.request().getId_product()).toList();
+        if (rows.isEmpty()) {
+            return ids;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(UPSERT_PRODUCT)) {
+            for (ImportRow row : rows) {
+                bindProduct(statement, row.request());
+                statement.setLong(13, row.request().getId_product());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        // Khối lượng đã có thì cập nhật tồn kho, chưa có thì thêm; thêm trước để dòng trùng id trong lô ghi đè đúng
+        Set<String> existing = existingWeights(connection, ids);
+        try (PreparedStatement insert = connection.prepareStatement(INSERT_WEIGHT_PRODUCT);
+             PreparedStatement update = connection.prepareStatement(UPDATE_WEIGHT_STOCK)) {
+            for (ImportRow row : rows) {
+                long productId = row.request().getId_product();
+                for (long[] weight : row.weights()) {
+                    if (existing.add(productId + ":" + weight[0])) {
+                        bindWeight(insert, productId, weight);
+                        insert.addBatch();
+                    } else {
+                        update.setInt(1, (int) weight[1]);
+                        update.setLong(2, productId);
+                        update.setLong(3, weight[0]);
+                        update.addBatch();
+                    }
+                }
+            }
+            insert.executeBatch();
+            update.executeBatch();
+        }
+        return ids;
+    }
+
+    // "id sản phẩm:id loại khối lượng" của các khối lượng đã có
+    private Set<String> existingWeights(Connection connection, List<Long> productIds) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(productIds.size(), "?"));
+        Set<String> keys = new HashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT product_id, weight_type_id FROM weight_product WHERE product_id IN (" + placeholders + ")")) {
+            for (int i = 0; i < productIds.size(); i++) {
+                statement.setLong(i + 1, productIds.get(i));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    keys.add(resultSet.getLong(1) + ":" + resultSet.getLong(2));
+                }
+            }
+        }
+        return keys;
+    }
+
+    private void bindWeight(PreparedStatement statement, long productId, long[] weight) throws SQLException {
+        statement.setLong(1, productId);
+        statement.setLong(2, weight[0]);
+        statement.setInt(3, (int) weight[1]);
+    }
+
+    private void index(List<Long> productIds) {
+        for (Product product : productRepository.findAllWithWeightProductsByIdIn(productIds)) {
+            productSearchIndex.index(product);
+            productSuggestionIndex.index(product);
+            productFacetIndex.index(product);
+        }
+    }
+
+    private void bindProduct(PreparedStatement statement, ProductRequest request) throws SQLException {
+        statement.setString(1, request.getName());
+        statement.setDouble(2, request.getPrice());
+        if (request.getOldPrice() != null) {
+            statement.setDouble(3, request.getOldPrice());
+        } else {
+            statement.setNull(3, Types.DOUBLE);
+        }
+        statement.setString(4, request.getDescription());
+        statement.setLong(5, request.getId_category());
+        if (request.getOrganic() != null) {
+            statement.setBoolean(6, request.getOrganic());
+        } else {
+            statement.setNull(6, Types.BOOLEAN);
+        }
+        statement.setString(7, request.getOrigin());
+        statement.setString(8, request.getPackaging());
+        statement.setString(9, request.getBrand());
+        statement.setString(10, request.getHowToUse());
+        statement.setString(11, request.getHowToPreserve());
+        statement.setBoolean(12, request.isActive());
+    }
+
+    private ProductRequest fromCsvRecord(List<String> record, Map<String, Integer> columns) {
+        ProductRequest request = new ProductRequest();
+        Double productId = parseDouble(column(record, columns, "id_product"), "id_product");
+        request.setId_product(productId != null ? productId.longValue() : 0);
+        request.setName(column(record, columns, "name"));
+        request.setPrice(parseDouble(column(record, columns, "price"), "price"));
+        request.setOldPrice(parseDouble(column(record, columns, "oldPrice"), "oldPrice"));
+        request.setDescription(column(record, columns, "description"));
+        Double categoryId = parseDouble(column(record, columns, "id_category"), "id_category");
+        request.setId_category(categoryId != null ? categoryId.longValue() : 0);
+        String organic = column(record, columns, "organic");
+        request.setOrganic(organic != null ? Boolean.parseBoolean(organic) : null);
+        request.setOrigin(column(record, columns, "origin"));
+        request.setPackaging(column(record, columns, "packaging"));
+        request.setBrand(column(record, columns, "brand"));
+        request.setHowToUse(column(record, columns, "howToUse"));
+        request.setHowToPreserve(column(record, columns, "howToPreserve"));
+        String active = column(record, columns, "active");
+        request.setActive(active == null || Boolean.parseBoolean(active));
+
+        List<WeightTypeRequest> weightTypes = new ArrayList<>();
+        String weights = column(record, columns, "weights");
+        if (weights != null) {
+            for (String pair : weights.split("\\|")) {
+                String[] parts = pair.split(":");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Invalid weights entry '" + pair + "'");
+                }
+                weightTypes.add(new WeightTypeRequest(parseDouble(parts[0], "weight"),
+                        parseDouble(parts[1], "stock").intValue()));
+            }
+        }
+        request.setWeightTypes(weightTypes);
+        return request;
+    }
+
+    private List<String> toCsvRecord(Product product) {
+        String weights = product.getWeightProducts() == null ? "" : product.getWeightProducts().stream()
+                .sorted(Comparator.comparingDouble(weightProduct -> weightProduct.getWeightType().getValue()))
+                .map(weightProduct -> weightProduct.getWeightType().getValue() + ":" + weightProduct.getStock())
+                .collect(Collectors.joining("|"));
+        return Arrays.asList(
+                String.valueOf(product.getId_product()),
+                product.getName(),
+                toText(product.getPrice()),
+                toText(product.getOldPrice()),
+                product.getDescription(),
+                product.getCategory() != null ? String.valueOf(product.getCategory().getId_category()) : null,
+                toText(product.getOrganic()),
+                product.getOrigin(),
+                product.getPackaging(),
+                product.getBrand(),
+                product.getHowToUse(),
+                product.getHowToPreserve(),
+                String.valueOf(product.isActive()),
+                weights);
+    }
+
+    private ProductRequest toRequest(Product product) {
+        List<WeightTypeRequest> weightTypes = product.getWeightProducts() == null ? List.of()
+                : product.getWeightProducts().stream()
+                .sorted(Comparator.comparingDouble(weightProduct -> weightProduct.getWeightType().getValue()))
+                .map(weightProduct -> new WeightTypeRequest(weightProduct.getWeightType().getValue(),
+                        weightProduct.getStock()))
+                .toList();
+        return ProductRequest.builder()
+                .id_product(product.getId_product())
+                .name(product.getName())
+                .price(product.getPrice())
+                .oldPrice(product.getOldPrice())
+                .description(product.getDescription())
+                .id_category(product.getCategory() != null ? product.getCategory().getId_category() : 0)
+                .image(product.getImage())
+                .organic(product.getOrganic())
+                .origin(product.getOrigin())
+                .packaging(product.getPackaging())
+                .brand(product.getBrand())
+                .howToUse(product.getHowToUse())
+                .howToPreserve(product.getHowToPreserve())
+                .isActive(product.isActive())
+                .weightTypes(weightTypes)
+                .build();
+    }
+
+    private String column(List<String> record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private Double parseDouble(String value, String column) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + column + " '" + value + "'");
+        }
+    }
+
+    private String toText(Object value) {
+        return value != null ? String.valueOf(value) : null;
+    }
+}
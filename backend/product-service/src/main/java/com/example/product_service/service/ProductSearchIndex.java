@@ -0,0 +1,195 @@
+package com.example.product_service.service;
+
+import com.example.product_service.entity.Product;
+import com.example.product_service.repository.ProductRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// Chỉ mục đảo ngược trong bộ nhớ cho tìm kiếm sản phẩm: bỏ dấu tiếng Việt, tách từ,
+// hỗ trợ tìm theo tiền tố và xếp hạng theo trường khớp (tên > thương hiệu > danh mục > mô tả)
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductSearchIndex {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private static final float NAME_WEIGHT = 4f;
+    private static final float BRAND_WEIGHT = 2f;
+    private static final float CATEGORY_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+    // Điểm của từ khớp theo tiền tố so với khớp nguyên từ
+    private static final float PREFIX_FACTOR = 0.5f;
+
+    final ProductRepository productRepository;
+
+    final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // từ -> (id sản phẩm -> trọng số)
+    final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    // id sản phẩm -> các từ đã index, dùng khi cập nhật/xóa
+    final Map<Long, Set<String>> productTerms = new HashMap<>();
+    final Set<Long> activeProducts = new HashSet<>();
+
+    public record SearchResult(List<Long> productIds, long totalElements) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            productTerms.clear();
+            activeProducts.clear();
+            int page = 0;
+            Page<Product> productPage;
+            do {
+                productPage = productRepository.findAll(PageRequest.of(page++, REBUILD_BATCH_SIZE));
+                productPage.forEach(this::addToIndex);
+            } while (productPage.hasNext());
+            log.info("Product search index built with {} products and {} terms", productTerms.size(), postings.size());
+        } catch (Exception e) {
+            log.error("Could not build product search index", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void index(Product product) {
+        lock.writeLock().lock();
+        try {
+            removeFromIndex(product.getId_product());
+            addToIndex(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Mọi từ trong câu truy vấn đều phải khớp (nguyên từ hoặc tiền tố)
+    public SearchResult search(String query, boolean activeOnly, int page, int size) {
+        lock.readLock().lock();
+        try {
+            Map<Long, Float> scores = score(query);
+            if (activeOnly) {
+                scores.keySet().retainAll(activeProducts);
+            }
+            List<Long> productIds = scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Float>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .skip((long) (page - 1) * size)
+                    .limit(size)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            return new SearchResult(productIds, scores.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Tất cả sản phẩm khớp truy vấn, không xếp hạng
+    public Set<Long> matchingIds(String query) {
+        lock.readLock().lock();
+        try {
+            return score(query).keySet();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Long, Float> score(String query) {
+        Map<Long, Float> scores = null;
+        for (String token : tokenize(query)) {
+            Map<Long, Float> tokenScores = scoreToken(token);
+            if (scores == null) {
+                scores = tokenScores;
+            } else {
+                scores.keySet().retainAll(tokenScores.keySet());
+                scores.replaceAll((id, score) -> score + tokenScores.get(id));
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        return scores == null ? new HashMap<>() : scores;
+    }
+
+    private Map<Long, Float> scoreToken(String token) {
+        Map<Long, Float> scores = new HashMap<>();
+        for (Map.Entry<String, Map<Long, Float>> entry
+                : postings.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+            float factor = entry.getKey().equals(token) ? 1f : PREFIX_FACTOR;
+            entry.getValue().forEach((id, weight) -> scores.merge(id, weight * factor, Math::max));
+        }
+        return scores;
+    }
+
+    private void addToIndex(Product product) {
+        Map<String, Float> termWeights = new HashMap<>();
+        addField(termWeights, product.getName(), NAME_WEIGHT);
+        addField(termWeights, product.getBrand(), BRAND_WEIGHT);
+        addField(termWeights, product.getCategory() != null ? product.getCategory().getName() : null, CATEGORY_WEIGHT);
+        addField(termWeights, product.getDescription(), DESCRIPTION_WEIGHT);
+
+        long productId = product.getId_product();
+        termWeights.forEach((term, weight) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(productId, weight));
+        productTerms.put(productId, Set.copyOf(termWeights.keySet()));
+        if (product.isActive()) {
+            activeProducts.add(productId);
+        }
+    }
+
+    private void removeFromIndex(long productId) {
+        Set<String> terms = productTerms.remove(productId);
+        if (terms != null) {
+            for (String term : terms) {
+                Map<Long, Float> termPostings = postings.get(term);
+                if (termPostings != null) {
+                    termPostings.remove(productId);
+                    if (termPostings.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+        activeProducts.remove(productId);
+    }
+
+    private static void addField(Map<String, Float> termWeights, String text, float weight) {
+        for (String token : tokenize(text)) {
+            termWeights.merge(token, weight, Math::max);
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(TOKEN_SEPARATOR.split(fold(text)))
+                .filter(token -> !token.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    // "Đậu Hà Lan" -> "dau ha lan"
+    static String fold(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(normalized).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,20 +1,28 @@
 package com.example.product_service.service;
 
+import com.example.event.dto.ItemUpdateStock;
+import com.example.event.dto.ReviewRatingEvent;
 import com.example.event.dto.UpdateStockRequest;
-import com.example.product_service.controller.FileUtils;
 import com.example.product_service.dto.request.FilterRequest;
 import com.example.product_service.dto.request.OrderItemRequest;
 import com.example.product_service.dto.request.ProductRequest;
+import com.example.product_service.dto.response.FacetCountResponse;
 import com.example.product_service.dto.response.PageResponse;
+import com.example.product_service.dto.response.ProductJson;
 import com.example.product_service.dto.response.ProductResponse;
+import com.example.product_service.dto.response.SuggestionResponse;
 import com.example.product_service.entity.Category;
+import com.example.product_service.entity.ProcessedEvent;
 import com.example.product_service.entity.Product;
 import com.example.product_service.entity.WeightProduct;
 import com.example.product_service.exception.AppException;
 import com.example.product_service.exception.ErrorCode;
 import com.example.product_service.mapper.ProductMapper;
-import com.example.product_service.repository.CategoryRepository;
+import com.example.product_service.repository.ProcessedEventRepository;
 import com.example.product_service.repository.ProductRepository;
+import com.example.product_service.repository.WeightProductRepository;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -22,12 +30,21 @@ import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -36,11 +53,34 @@ import java.util.Optional;
 public class ProductService {
     ProductRepository productRepository;
     ProductMapper productMapper;
-    CategoryRepository categoryRepository;
-
-    String urlImagePath = "http://localhost:8082/products/image-product/";
+    WeightProductRepository weightProductRepository;
+    ProcessedEventRepository processedEventRepository;
+    ProductSearchIndex productSearchIndex;
+    ProductSuggestionIndex productSuggestionIndex;
+    ProductFacetIndex productFacetIndex;
+    ImageStorageService imageStorageService;
+    ActiveCatalog activeCatalog;
+    StockWatch stockWatch;
+    ReferenceData referenceData;
+    JdbcTemplate jdbcTemplate;
+
+    static final String IMAGE_URL_PATH = "http://localhost:8082/products/image-product/";
+    // Cộng tồn kho có điều kiện như WeightProductRepository.addStock, gửi theo lô JDBC
+    static final String ADD_STOCK = "UPDATE weight_product SET stock = stock + ? " +
+            "WHERE product_id = ? AND weight_type_id IN (SELECT id FROM weight_type WHERE value = ?) " +
+            "AND stock + ? >= 0";
 
     // ===== USER APIs =====
+    // Khi snapshot danh mục đã sẵn sàng, các API cho người dùng đọc thẳng từ bộ nhớ;
+    // trước đó (lúc khởi động) đọc trực tiếp DB
+
+    public ProductJson getProductJsonForUser(Long productId) {
+        if (activeCatalog.isReady()) {
+            return activeCatalog.findProduct(productId)
+                    .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_FOUND));
+        }
+        return activeCatalog.toJson(getProductByIdForUser(productId));
+    }
 
     public ProductResponse getProductByIdForUser(Long productId) {
         Product product = productRepository.findById(productId)
@@ -51,37 +91,84 @@ public class ProductService {
         }
 
         ProductResponse response = productMapper.toProductResponse(product);
-        response.setImage(response.getImage() != null ? urlImagePath + response.getImage() : null);
+        applyImageUrls(response);
         return response;
     }
 
-    public PageResponse<ProductResponse> getAllProductsForUser(int page, int size) {
-        Specification<Product> spec = (root, query, cb) -> cb.isTrue(root.get("active"));
-        Page<Product> productPage = productRepository.findAll(spec, PageRequest.of(page - 1, size));
-        return getListProductResponses(productPage, page);
+    public PageResponse<ProductJson> getAllProductsForUser(int page, int size, ProductSort sort) {
+        if (activeCatalog.isReady()) {
+            return activeCatalog.getPage(null, sort, page, size);
+        }
+        Specification<Product> spec = sorted((root, query, cb) -> cb.isTrue(root.get("isActive")), sort);
+        return activeCatalog.toJsonPage(getListProductResponses(
+                productRepository.findAll(spec, PageRequest.of(page - 1, size)), page));
     }
 
-    public PageResponse<ProductResponse> getProductsByCategoryForUser(long categoryId, int page, int size) {
-        Specification<Product> spec = (root, query, cb) -> cb.and(
-                cb.equal(root.get("category").get("id"), categoryId),
+    public PageResponse<ProductJson> getProductsByCategoryForUser(long categoryId, int page, int size,
+                                                                  ProductSort sort) {
+        if (activeCatalog.isReady()) {
+            return activeCatalog.getPage(categoryId, sort, page, size);
+        }
+        Specification<Product> spec = sorted((root, query, cb) -> cb.and(
+                cb.equal(root.get("category").get("id_category"), categoryId),
                 cb.isTrue(root.get("isActive"))
-        );
-        Page<Product> productPage = productRepository.findAll(spec, PageRequest.of(page - 1, size));
-        return getListProductResponses(productPage, page);
+        ), sort);
+        return activeCatalog.toJsonPage(getListProductResponses(
+                productRepository.findAll(spec, PageRequest.of(page - 1, size)), page));
     }
-    public PageResponse<ProductResponse> getProductsByFilter(FilterRequest filter, int page, int size) {
-        Specification<Product> spec = filterProductsForUser(filter);
-        Page<Product> productPage = productRepository.findAll(spec, PageRequest.of(page - 1, size));
-        return getListProductResponses(productPage, page);
+
+    public PageResponse<ProductJson> getAllProductsForUserByCursor(String cursor, int size, boolean withCount) {
+        if (activeCatalog.isReady()) {
+            return activeCatalog.getPageByCursor(null, cursor, size, withCount);
+        }
+        List<Product> products = productRepository.findActiveAfter(KeysetPage.afterId(cursor), KeysetPage.limit(size));
+        return activeCatalog.toJsonPage(KeysetPage.toPageResponse(products, size, Product::getId_product,
+                this::toProductResponse, withCount, productRepository::countActive));
     }
-    public PageResponse<ProductResponse> searchProductsByUser(String query, int page, int size) {
-        Specification<Product> spec = (root, q, cb) -> cb.and(
-                cb.isTrue(root.get("active")),
-                cb.like(cb.lower(root.get("name")), "%" + query.trim().toLowerCase() + "%")
-        );
 
-        Page<Product> productPage = productRepository.findAll(spec, PageRequest.of(page - 1, size));
-        return getListProductResponses(productPage, page);
+    public PageResponse<ProductJson> getProductsByCategoryForUserByCursor(long categoryId, String cursor,
+                                                                          int size, boolean withCount) {
+        if (activeCatalog.isReady()) {
+            return activeCatalog.getPageByCursor(categoryId, cursor, size, withCount);
+        }
+        List<Product> products = productRepository.findActiveByCategoryAfter(
+                categoryId, KeysetPage.afterId(cursor), KeysetPage.limit(size));
+        return activeCatalog.toJsonPage(KeysetPage.toPageResponse(products, size, Product::getId_product,
+                this::toProductResponse, withCount, () -> productRepository.countActiveByCategory(categoryId)));
+    }
+
+    public PageResponse<ProductJson> getProductsByFilter(FilterRequest filter, int page, int size) {
+        ProductSort sort = ProductSort.from(filter.getSort());
+        // Chỉ mục chưa build xong (hoặc cần sắp xếp mà snapshot chưa có) thì lọc bằng DB
+        if (!productFacetIndex.isReady() || (sort != ProductSort.DEFAULT && !activeCatalog.isReady())) {
+            Specification<Product> spec = sorted(filterProductsForUser(filter), sort);
+            Page<Product> productPage = productRepository.findAll(spec, PageRequest.of(page - 1, size));
+            return activeCatalog.toJsonPage(getListProductResponses(productPage, page));
+        }
+        if (sort != ProductSort.DEFAULT) {
+            Long categoryId = filter.getCategoryId() != null && filter.getCategoryId() > 0
+                    ? filter.getCategoryId()
+                    : null;
+            return activeCatalog.getMatchingPage(productFacetIndex.matchingIds(filter), categoryId, sort, page, size);
+        }
+        ProductFacetIndex.FilterResult result = productFacetIndex.filter(filter, page, size);
+        return getActiveProductsByIds(result.productIds(), result.totalElements(), page, size);
+    }
+
+    public FacetCountResponse getFacetCounts(FilterRequest filter) {
+        return productFacetIndex.countFacets(filter);
+    }
+    public PageResponse<ProductJson> searchProductsByUser(String query, int page, int size) {
+        // Từ khóa rỗng trả về toàn bộ sản phẩm như truy vấn LIKE '%%' trước đây
+        if (query == null || query.isBlank()) {
+            return getAllProductsForUser(page, size, ProductSort.DEFAULT);
+        }
+        ProductSearchIndex.SearchResult result = productSearchIndex.search(query, true, page, size);
+        return getActiveProductsByIds(result.productIds(), result.totalElements(), page, size);
+    }
+
+    public List<SuggestionResponse> suggestProducts(String keyword, int limit) {
+        return productSuggestionIndex.suggest(keyword, limit);
     }
 
     // ===== ADMIN APIs =====
@@ -90,24 +177,26 @@ public class ProductService {
         ProductResponse response = productMapper.toProductResponse(
                 productRepository.findById(productId)
                         .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_FOUND)));
-        response.setImage(response.getImage() != null ? urlImagePath + response.getImage() : null);
+        applyImageUrls(response);
         return response;
     }
 
     public ProductResponse createProduct(ProductRequest productRequest, MultipartFile file) {
         Product product = productMapper.toProduct(productRequest);
-        Category category = categoryRepository.findById(productRequest.getId_category())
-                .orElseThrow(() -> new AppException(ErrorCode.CATEGORY_NOT_FOUND));
+        Category category = referenceData.getCategoryReference(productRequest.getId_category());
         product.setCategory(category);
 
-        if (file != null && !file.isEmpty()) {
-            String imageFilename = FileUtils.saveImage(file);
-            product.setImage(imageFilename);
-        }
-
-        Product savedProduct = productRepository.save(product);
+        Product savedProduct = imageStorageService.store(file, fileName -> {
+            product.setImage(fileName);
+            return productRepository.save(product);
+        });
+        imageStorageService.generateVariantsAsync(savedProduct.getId_product(), savedProduct.getImage());
+        productSearchIndex.index(savedProduct);
+        productSuggestionIndex.index(savedProduct);
+        productFacetIndex.index(savedProduct);
+        activeCatalog.refresh(List.of(savedProduct.getId_product()));
         ProductResponse response = productMapper.toProductResponse(savedProduct);
-        response.setImage(response.getImage() != null ? urlImagePath + response.getImage() : null);
+        applyImageUrls(response);
         return response;
     }
 
@@ -117,19 +206,31 @@ public class ProductService {
 
         productMapper.updateProduct(product, productRequest);
 
-        Category category = categoryRepository.findById(productRequest.getId_category())
-                .orElseThrow(() -> new AppException(ErrorCode.CATEGORY_NOT_FOUND));
+        Category category = referenceData.getCategoryReference(productRequest.getId_category());
         product.setCategory(category);
 
-        if (file != null && !file.isEmpty()) {
-            FileUtils.deleteImage(product.getImage());
-            String imageFilename = FileUtils.saveImage(file);
-            product.setImage(imageFilename);
+        String oldImage = product.getImage();
+        Product savedProduct = imageStorageService.store(file, newImage -> {
+            if (newImage != null && !newImage.equals(oldImage)) {
+                product.setImage(newImage);
+                product.setImageThumbnail(null);
+                product.setImageMedium(null);
+                product.setImageLarge(null);
+            }
+            return productRepository.save(product);
+        });
+        String newImage = savedProduct.getImage();
+        if (newImage != null && !newImage.equals(oldImage)) {
+            imageStorageService.deleteIfUnused(oldImage);
+            imageStorageService.generateVariantsAsync(savedProduct.getId_product(), newImage);
         }
-
-        Product savedProduct = productRepository.save(product);
+        productSearchIndex.index(savedProduct);
+        productSuggestionIndex.index(savedProduct);
+        productFacetIndex.index(savedProduct);
+        activeCatalog.refresh(List.of(savedProduct.getId_product()));
+        stockWatch.productSaved(savedProduct);
         ProductResponse response = productMapper.toProductResponse(savedProduct);
-        response.setImage(response.getImage() != null ? urlImagePath + response.getImage() : null);
+        applyImageUrls(response);
         return response;
     }
 
@@ -138,6 +239,10 @@ public class ProductService {
                 .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_FOUND));
         product.setActive(false); // Soft delete
         productRepository.save(product);
+        productSearchIndex.index(product);
+        productSuggestionIndex.index(product);
+        productFacetIndex.index(product);
+        activeCatalog.refresh(List.of(product.getId_product()));
     }
 
     public void restoreProduct(Long productId) {
@@ -145,6 +250,28 @@ public class ProductService {
                 .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_FOUND));
         product.setActive(true); // Restore
         productRepository.save(product);
+        productSearchIndex.index(product);
+        productSuggestionIndex.index(product);
+        productFacetIndex.index(product);
+        activeCatalog.refresh(List.of(product.getId_product()));
+    }
+
+    // Sự kiện mang tổng hợp đầy đủ nên chỉ cần 1 câu UPDATE ghi đè, bỏ qua nếu đã có bản mới hơn
+    public void applyRatingSummary(ReviewRatingEvent event) {
+        if (event.getRatingCount() < 0 || event.getRatingSum() < 0 || event.getOneStar() < 0
+                || event.getTwoStar() < 0 || event.getThreeStar() < 0 || event.getFourStar() < 0
+                || event.getFiveStar() < 0) {
+            log.warn("Ignoring invalid rating summary {}", event);
+            return;
+        }
+        int updated = productRepository.applyRatingSummary(event.getProductId(), event.getRatingCount(),
+                event.getRatingSum(), event.getOneStar(), event.getTwoStar(), event.getThreeStar(),
+                event.getFourStar(), event.getFiveStar(), event.getAsOf());
+        if (updated == 0) {
+            log.debug("Rating summary for product {} is stale or the product is unknown", event.getProductId());
+            return;
+        }
+        activeCatalog.refresh(List.of(event.getProductId()));
     }
 
     public PageResponse<ProductResponse> getAllProducts(int page, int size) {
@@ -152,25 +279,65 @@ public class ProductService {
         return getListProductResponses(productPage, page);
     }
 
+    public PageResponse<ProductResponse> getAllProductsByCursor(String cursor, int size, boolean withCount) {
+        List<Product> products = productRepository.findAfter(KeysetPage.afterId(cursor), KeysetPage.limit(size));
+        return KeysetPage.toPageResponse(products, size, Product::getId_product, this::toProductResponse,
+                withCount, productRepository::count);
+    }
+
+    public PageResponse<ProductResponse> getProductsByCategoryByCursor(long categoryId, String cursor,
+                                                                       int size, boolean withCount) {
+        List<Product> products = productRepository.findByCategoryAfter(
+                categoryId, KeysetPage.afterId(cursor), KeysetPage.limit(size));
+        return KeysetPage.toPageResponse(products, size, Product::getId_product, this::toProductResponse,
+                withCount, () -> productRepository.countByCategory(categoryId));
+    }
+
     public PageResponse<ProductResponse> getProductsByCategory(long categoryId, int page, int size) {
         Page<Product> productPage = productRepository.findByCategoryId(categoryId, PageRequest.of(page - 1, size));
         return getListProductResponses(productPage, page);
     }
 
     public PageResponse<ProductResponse> searchProducts(String query, int page, int size) {
-        Page<Product> productPage = productRepository.searchProducts(query, PageRequest.of(page - 1, size));
-        return getListProductResponses(productPage, page);
+        if (query == null || query.isBlank()) {
+            return getAllProducts(page, size);
+        }
+        ProductSearchIndex.SearchResult result = productSearchIndex.search(query, false, page, size);
+        return getProductResponsesByIds(result.productIds(), result.totalElements(), page, size);
     }
 
 
     // ===== SHARED METHODS =====
 
-    private PageResponse<ProductResponse> getListProductResponses(Page<Product> productPage, int page) {
+    static void applyImageUrls(ProductResponse response) {
+        response.setImage(response.getImage() != null ? IMAGE_URL_PATH + response.getImage() : null);
+        response.setImageThumbnail(response.getImageThumbnail() != null
+                ? IMAGE_URL_PATH + response.getImageThumbnail() : null);
+        response.setImageMedium(response.getImageMedium() != null ? IMAGE_URL_PATH + response.getImageMedium() : null);
+        response.setImageLarge(response.getImageLarge() != null ? IMAGE_URL_PATH + response.getImageLarge() : null);
+    }
+
+    private PageResponse<ProductJson> getActiveProductsByIds(List<Long> productIds, long totalElements,
+                                                             int page, int size) {
+        if (activeCatalog.isReady()) {
+            return activeCatalog.getProducts(productIds, totalElements, page, size);
+        }
+        return activeCatalog.toJsonPage(getProductResponsesByIds(productIds, totalElements, page, size));
+    }
+
+    private ProductResponse toProductResponse(Product product) {
+        ProductResponse response = productMapper.toProductResponse(product);
+        applyImageUrls(response);
+        return response;
+    }
+
+    // Để package-private cho benchmark JMH (src/jmh) gọi trực tiếp
+    PageResponse<ProductResponse> getListProductResponses(Page<Product> productPage, int page) {
         List<ProductResponse> productResponses = productPage.getContent()
                 .stream()
                 .map(product -> {
                     ProductResponse response = productMapper.toProductResponse(product);
-                    response.setImage(response.getImage() != null ? urlImagePath + response.getImage() : null);
+                    applyImageUrls(response);
                     return response;
                 })
                 .toList();
@@ -183,12 +350,58 @@ public class ProductService {
                 .build();
     }
 
-    private Specification<Product> filterProductsForUser(FilterRequest filter) {
+    // Giữ nguyên thứ tự id do chỉ mục (tìm kiếm, facet) trả về
+    private PageResponse<ProductResponse> getProductResponsesByIds(List<Long> productIds, long totalElements,
+                                                                  int page, int size) {
+        Map<Long, Product> products = productRepository.findAllWithWeightProductsByIdIn(productIds).stream()
+                .collect(Collectors.toMap(Product::getId_product, Function.identity()));
+        List<ProductResponse> productResponses = productIds.stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .map(product -> {
+                    ProductResponse response = productMapper.toProductResponse(product);
+                    applyImageUrls(response);
+                    return response;
+                })
+                .toList();
+
+        return PageResponse.<ProductResponse>builder()
+                .currentPage(page)
+                .totalPages((int) ((totalElements + size - 1) / size))
+                .totalElements(totalElements)
+                .elements(productResponses)
+                .build();
+    }
+
+    // Thêm ORDER BY cho đường dự phòng bằng DB; truy vấn đếm của Spring Data tự bỏ ORDER BY
+    private Specification<Product> sorted(Specification<Product> spec, ProductSort sort) {
+        return (root, query, cb) -> {
+            Predicate predicate = spec.toPredicate(root, query, cb);
+            Expression<Long> id = root.get("id_product");
+            switch (sort) {
+                case PRICE_ASC -> query.orderBy(cb.asc(root.get("price")), cb.desc(id));
+                case PRICE_DESC -> query.orderBy(cb.desc(root.get("price")), cb.desc(id));
+                case NEWEST -> query.orderBy(cb.desc(id));
+                case BEST_SELLING -> query.orderBy(cb.desc(root.get("soldQuantity")), cb.desc(id));
+                case RATING -> {
+                    Path<Long> ratingCount = root.get("rating").get("ratingCount");
+                    Expression<Number> average = cb.quot(root.get("rating").<Long>get("ratingSum"),
+                            cb.<Long>selectCase().when(cb.equal(ratingCount, 0L), 1L).otherwise(ratingCount));
+                    query.orderBy(cb.desc(average), cb.desc(id));
+                }
+                case DEFAULT -> query.orderBy(cb.asc(id));
+            }
+            return predicate;
+        };
+    }
+
+    // Để package-private cho benchmark JMH (src/jmh) gọi trực tiếp
+    Specification<Product> filterProductsForUser(FilterRequest filter) {
         return (root, queryObj, criteriaBuilder) -> {
             List<Predicate> predicates = new ArrayList<>();
 
             // Chỉ lấy sản phẩm đang active
-            predicates.add(criteriaBuilder.isTrue(root.get("active")));
+            predicates.add(criteriaBuilder.isTrue(root.get("isActive")));
 
             if (filter.getOrganic() != null) {
                 predicates.add(criteriaBuilder.equal(root.get("organic"), filter.getOrganic()));
@@ -200,7 +413,7 @@ public class ProductService {
                 predicates.add(criteriaBuilder.lessThanOrEqualTo(root.get("price"), filter.getMaxPrice()));
             }
             if (filter.getCategoryId() != null && filter.getCategoryId() > 0) {
-                predicates.add(criteriaBuilder.equal(root.get("category").get("id"), filter.getCategoryId()));
+                predicates.add(criteriaBuilder.equal(root.get("category").get("id_category"), filter.getCategoryId()));
             }
             if (filter.getBrand() != null && !filter.getBrand().trim().isEmpty()) {
                 predicates.add(criteriaBuilder.like(root.get("brand"), "%" + filter.getBrand().trim() + "%"));
@@ -216,44 +429,100 @@ public class ProductService {
             return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
         };
     }
-    public void updateStock(UpdateStockRequest request) {
-        request.getItems().forEach(req -> {
-            Optional<Product> productOp = productRepository.findById(req.getProductId());
-            if (productOp.isPresent()) {
-                Product p = productOp.get();
-                for (WeightProduct o : p.getWeightProducts()) {
-                    if (o.getWeightType().getValue() == req.getWeight()) {
-                        o.setStock(o.getStock() + req.getQuantity());
-                        break;
-                    }
-                }
-                productRepository.save(p);
+    // Mỗi message được áp dụng trong 1 transaction, các dòng là các câu UPDATE có điều kiện gửi chung 1 lô.
+    // Trả về các dòng bị từ chối (không tìm thấy hoặc không đủ tồn kho)
+    @Transactional
+    public List<ItemUpdateStock> updateStock(UpdateStockRequest request) {
+        List<ItemUpdateStock> rejectedItems = new ArrayList<>();
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            return rejectedItems;
+        }
+        if (request.getEventId() != null) {
+            // 2 bản trùng chạy đồng thời thì bản sau lỗi khóa chính khi commit, listener thử lại và bỏ qua ở đây
+            if (processedEventRepository.existsById(request.getEventId())) {
+                log.info("Skipping already applied stock update {}", request.getEventId());
+                return rejectedItems;
+            }
+            processedEventRepository.save(ProcessedEvent.builder().id(request.getEventId()).build());
+        }
+        // Sắp xếp theo thứ tự cố định để tránh deadlock giữa các message đồng thời
+        List<ItemUpdateStock> items = request.getItems().stream()
+                .sorted(Comparator.comparing(ItemUpdateStock::getProductId)
+                        .thenComparingDouble(ItemUpdateStock::getWeight))
+                .toList();
+        int[] updated = jdbcTemplate.batchUpdate(ADD_STOCK, items, items.size(), (statement, item) -> {
+            statement.setInt(1, item.getQuantity());
+            statement.setLong(2, item.getProductId());
+            statement.setDouble(3, item.getWeight());
+            statement.setInt(4, item.getQuantity());
+        })[0];
+        Set<Long> changedProductIds = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            ItemUpdateStock item = items.get(i);
+            if (updated[i] == 0) {
+                rejectedItems.add(item);
             } else {
-                log.error("Product not found for ID {}", req.getProductId());
+                changedProductIds.add(item.getProductId());
+                stockWatch.stockAdded(item.getProductId(), item.getWeight(), item.getQuantity());
             }
+        }
+        // Không dòng nào được áp dụng thì snapshot không đổi
+        if (!changedProductIds.isEmpty()) {
+            activeCatalog.refresh(changedProductIds);
+        }
+        return rejectedItems;
+    }
+
+    // Trừ tồn kho của các lượt giữ hàng đã xác nhận (key: id WeightProduct), tất cả hoặc không
+    @Transactional
+    public void confirmReservedStock(Map<Long, Integer> quantities, Map<Long, Integer> productQuantities) {
+        quantities.forEach((weightProductId, quantity) -> {
+            if (weightProductRepository.addStockById(weightProductId, -quantity) == 0) {
+                throw new AppException(ErrorCode.OUT_OF_STOCK);
+            }
+            stockWatch.stockAddedById(weightProductId, -quantity);
         });
+        productQuantities.forEach(productRepository::addSoldQuantity);
+        activeCatalog.refresh(productQuantities.keySet());
     }
 
     public List<String> checkStock(List<OrderItemRequest> request) {
         List<String> outOfStockProducts = new ArrayList<>();
+        if (request == null || request.isEmpty()) {
+            return outOfStockProducts;
+        }
+
+        // Lấy toàn bộ sản phẩm + khối lượng của đơn hàng trong 1 query
+        Set<Long> productIds = request.stream()
+                .map(item -> Long.valueOf(item.getProductCode()))
+                .collect(Collectors.toSet());
+        Map<Long, Product> products = new HashMap<>();
+        Map<StockKey, WeightProduct> weightProducts = new HashMap<>();
+        for (Product product : productRepository.findAllWithWeightProductsByIdIn(productIds)) {
+            products.put(product.getId_product(), product);
+            for (WeightProduct weightProduct : product.getWeightProducts()) {
+                weightProducts.put(new StockKey(product.getId_product(), weightProduct.getWeightType().getValue()),
+                        weightProduct);
+            }
+        }
 
         for (OrderItemRequest item : request) {
-            Optional<Product> productOpt = productRepository.findById(Long.valueOf(item.getProductCode()));
-            if (productOpt.isPresent()) {
-                Product product = productOpt.get();
-                for (WeightProduct weightProduct : product.getWeightProducts()) {
-                    if (weightProduct.getWeightType().getValue() == item.getWeight()) {
-                        if (weightProduct.getStock() < item.getQuantity()) {
-                            outOfStockProducts.add(product.getName() +
-                                    " (" + weightProduct.getWeightType().getValue() + "kg)");
-                        }
-                    }
-                }
-            } else {
+            Long productId = Long.valueOf(item.getProductCode());
+            Product product = products.get(productId);
+            if (product == null) {
                 outOfStockProducts.add("Sản phẩm có mã " + item.getProductCode() + " không tồn tại");
+                continue;
+            }
+            WeightProduct weightProduct = weightProducts.get(new StockKey(productId, item.getWeight()));
+            if (weightProduct != null && weightProduct.getStock() < item.getQuantity()) {
+                outOfStockProducts.add(product.getName() +
+                        " (" + weightProduct.getWeightType().getValue() + "kg)");
             }
         }
 
         return outOfStockProducts;
     }
+
+    private record StockKey(long productId, double weight) {
+    }
 }
@@ -0,0 +1,27 @@
+package com.example.product_service.service;
+
+import com.example.product_service.exception.AppException;
+import com.example.product_service.exception.ErrorCode;
+
+import java.util.Locale;
+
+// Thứ tự sắp xếp sản phẩm cho trang danh sách; DEFAULT là theo id như trước
+public enum ProductSort {
+    DEFAULT,
+    PRICE_ASC,
+    PRICE_DESC,
+    NEWEST,
+    BEST_SELLING,
+    RATING;
+
+    public static ProductSort from(String value) {
+        if (value == null || value.isBlank()) {
+            return DEFAULT;
+        }
+        try {
+            return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new AppException(ErrorCode.INVALID_SORT);
+        }
+    }
+}
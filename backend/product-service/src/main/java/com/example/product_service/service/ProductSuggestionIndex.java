@@ -0,0 +1,399 @@
+package com.example.product_service.service;
+
+import com.example.product_service.dto.response.SuggestionResponse;
+import com.example.product_service.entity.Product;
+import com.example.product_service.repository.ProductRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Gợi ý tìm kiếm (autocomplete) từ tên sản phẩm, thương hiệu và danh mục.
+// Radix trie (nén cạnh) trên các từ của gợi ý, mỗi node lưu sẵn top gợi ý của nhánh nên truy vấn 1 từ
+// chỉ cần đi theo tiền tố. Thêm/sửa sản phẩm và số lượng bán chỉ cập nhật các nhánh liên quan, không build lại
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductSuggestionIndex {
+    public static final int MAX_SUGGESTIONS = 10;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    private static final Suggestion[] NO_SUGGESTIONS = new Suggestion[0];
+
+    // Điểm cao trước, cùng điểm thì theo tên; key để 2 gợi ý trùng tên khác loại không bị coi là một
+    private static final Comparator<Suggestion> RANK = Comparator.<Suggestion>comparingLong(s -> s.score).reversed()
+            .thenComparing(s -> s.text)
+            .thenComparing(s -> s.key);
+
+    final ProductRepository productRepository;
+
+    final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // "<type>:<text đã bỏ dấu>" -> gợi ý
+    final Map<String, Suggestion> suggestions = new HashMap<>();
+    // id sản phẩm -> key các gợi ý của sản phẩm
+    final Map<Long, List<String>> productSuggestions = new HashMap<>();
+    // id sản phẩm -> số lượng đã bán (lấy từ Product.soldQuantity, cộng thêm các đơn xác nhận sau đó)
+    final Map<Long, Long> soldQuantities = new HashMap<>();
+    Node root = new Node("");
+
+    private static final class Suggestion {
+        final String text;
+        final String type;
+        final String key;
+        // text đã bỏ dấu, các từ cách nhau 1 dấu cách
+        final String folded;
+        final Set<Long> productIds = new HashSet<>();
+        // Chỉ đổi khi đã gỡ khỏi các Node.terminals (TreeSet sắp theo điểm)
+        long score;
+
+        Suggestion(String text, String type, String key, String folded) {
+            this.text = text;
+            this.type = type;
+            this.key = key;
+            this.folded = folded;
+        }
+
+        Set<String> words() {
+            return new HashSet<>(Arrays.asList(folded.split(" ")));
+        }
+
+        // Cụm đã gõ bắt đầu tại đầu 1 từ của gợi ý: "tao fu" khớp "tao fuji", "fu" khớp "tao fuji"
+        boolean matches(String query) {
+            return folded.startsWith(query) || folded.contains(" " + query);
+        }
+    }
+
+    private static final class Node {
+        // Nhãn cạnh từ node cha (nén nhiều ký tự)
+        String label;
+        final TreeMap<Character, Node> children = new TreeMap<>();
+        // Gợi ý có 1 từ kết thúc đúng tại node này
+        final TreeSet<Suggestion> terminals = new TreeSet<>(RANK);
+        // Các gợi ý tốt nhất trong nhánh này, đã sắp theo RANK
+        Suggestion[] top = NO_SUGGESTIONS;
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    public List<SuggestionResponse> suggest(String prefix, int limit) {
+        int count = Math.max(0, Math.min(limit, MAX_SUGGESTIONS));
+        List<String> tokens = ProductSearchIndex.tokenize(prefix);
+        if (tokens.isEmpty() || count == 0) {
+            return List.of();
+        }
+        // Giữ dấu cách cuối để "tao " chỉ gợi ý các cụm có từ sau "tao"
+        boolean lastWordComplete = prefix.endsWith(" ");
+        String query = String.join(" ", tokens) + (lastWordComplete ? " " : "");
+        int completeWords = lastWordComplete ? tokens.size() : tokens.size() - 1;
+        lock.readLock().lock();
+        try {
+            if (completeWords == 0) {
+                Node node = findPrefix(tokens.get(0));
+                if (node == null) {
+                    return List.of();
+                }
+                return Arrays.stream(node.top).limit(count).map(ProductSuggestionIndex::toResponse).toList();
+            }
+            // Nhiều từ: duyệt tập gợi ý nhỏ nhất trong các từ đã gõ xong (đã sắp theo điểm) rồi kiểm tra cả cụm
+            TreeSet<Suggestion> candidates = null;
+            for (String word : tokens.subList(0, completeWords)) {
+                Node node = findWord(word);
+                if (node == null) {
+                    return List.of();
+                }
+                if (candidates == null || node.terminals.size() < candidates.size()) {
+                    candidates = node.terminals;
+                }
+            }
+            return candidates.stream()
+                    .filter(suggestion -> suggestion.matches(query))
+                    .limit(count)
+                    .map(ProductSuggestionIndex::toResponse)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            suggestions.clear();
+            productSuggestions.clear();
+            soldQuantities.clear();
+            root = new Node("");
+            int page = 0;
+            Page<Product> productPage;
+            do {
+                productPage = productRepository.findAll(PageRequest.of(page++, REBUILD_BATCH_SIZE));
+                productPage.forEach(this::addProduct);
+            } while (productPage.hasNext());
+            log.info("Product suggestion index built with {} suggestions", suggestions.size());
+        } catch (Exception e) {
+            log.error("Could not build product suggestion index", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void index(Product product) {
+        lock.writeLock().lock();
+        try {
+            removeProduct(product.getId_product());
+            addProduct(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Số lượng bán được cộng vào độ phổ biến của gợi ý
+    public void recordSales(Map<Long, Integer> productQuantities) {
+        lock.writeLock().lock();
+        try {
+            Set<Suggestion> changed = new HashSet<>();
+            productQuantities.forEach((productId, quantity) -> {
+                List<String> keys = productSuggestions.get(productId);
+                if (keys == null) {
+                    return;
+                }
+                soldQuantities.merge(productId, (long) quantity, Long::sum);
+                keys.forEach(key -> changed.add(suggestions.get(key)));
+            });
+            changed.forEach(this::rescore);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addProduct(Product product) {
+        if (!product.isActive()) {
+            return;
+        }
+        long productId = product.getId_product();
+        soldQuantities.put(productId, product.getSoldQuantity());
+        List<String> keys = new ArrayList<>();
+        addSuggestion(keys, productId, product.getName(), "PRODUCT");
+        addSuggestion(keys, productId, product.getBrand(), "BRAND");
+        addSuggestion(keys, productId, product.getCategory() != null ? product.getCategory().getName() : null,
+                "CATEGORY");
+        productSuggestions.put(productId, keys);
+    }
+
+    private void addSuggestion(List<String> keys, long productId, String text, String type) {
+        String folded = String.join(" ", ProductSearchIndex.tokenize(text));
+        if (folded.isEmpty()) {
+            return;
+        }
+        String key = type + ":" + folded;
+        Suggestion suggestion = suggestions.get(key);
+        if (suggestion == null) {
+            suggestion = new Suggestion(text.trim(), type, key, folded);
+            suggestions.put(key, suggestion);
+            suggestion.productIds.add(productId);
+            suggestion.score = score(suggestion);
+            for (String word : suggestion.words()) {
+                List<Node> path = insertWord(word);
+                path.get(path.size() - 1).terminals.add(suggestion);
+                refresh(path);
+            }
+        } else if (suggestion.productIds.add(productId)) {
+            rescore(suggestion);
+        }
+        keys.add(key);
+    }
+
+    private void removeProduct(long productId) {
+        List<String> keys = productSuggestions.remove(productId);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            Suggestion suggestion = suggestions.get(key);
+            if (suggestion == null || !suggestion.productIds.remove(productId)) {
+                continue;
+            }
+            if (suggestion.productIds.isEmpty()) {
+                suggestions.remove(key);
+                for (String word : suggestion.words()) {
+                    List<Node> path = findPath(word);
+                    if (path != null) {
+                        path.get(path.size() - 1).terminals.remove(suggestion);
+                        refresh(path);
+                    }
+                }
+            } else {
+                rescore(suggestion);
+            }
+        }
+        soldQuantities.remove(productId);
+    }
+
+    private long score(Suggestion suggestion) {
+        return suggestion.productIds.stream()
+                .mapToLong(productId -> 1 + soldQuantities.getOrDefault(productId, 0L))
+                .sum();
+    }
+
+    // Gỡ khỏi các TreeSet trước khi đổi điểm rồi thêm lại, sau đó tính lại top trên các nhánh của gợi ý.
+    // refresh của 1 từ có thể gộp / tách node nằm trên đường của từ khác (vd "pet" và "pets")
+    // nên đường đi được tìm lại cho từng từ ngay trước khi thêm
+    private void rescore(Suggestion suggestion) {
+        long score = score(suggestion);
+        if (score == suggestion.score) {
+            return;
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : suggestion.words()) {
+            List<Node> path = findPath(word);
+            if (path != null && path.get(path.size() - 1).terminals.remove(suggestion)) {
+                words.add(word);
+            }
+        }
+        suggestion.score = score;
+        for (String word : words) {
+            List<Node> path = insertWord(word);
+            path.get(path.size() - 1).terminals.add(suggestion);
+            refresh(path);
+        }
+    }
+
+    // Trả về các node từ gốc tới node kết thúc từ, tách cạnh nếu từ dừng giữa 1 cạnh
+    private List<Node> insertWord(String word) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < word.length()) {
+            Node child = node.children.get(word.charAt(i));
+            if (child == null) {
+                child = new Node(word.substring(i));
+                node.children.put(word.charAt(i), child);
+                path.add(child);
+                return path;
+            }
+            int common = commonPrefix(child.label, word, i);
+            if (common < child.label.length()) {
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.children.put(child.label.charAt(0), child);
+                middle.top = child.top;
+                node.children.put(middle.label.charAt(0), middle);
+                child = middle;
+            }
+            node = child;
+            path.add(node);
+            i += common;
+        }
+        return path;
+    }
+
+    // Các node từ gốc tới node kết thúc đúng tại từ, null nếu từ không có trong trie
+    private List<Node> findPath(String word) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < word.length()) {
+            node = node.children.get(word.charAt(i));
+            if (node == null || commonPrefix(node.label, word, i) < node.label.length()) {
+                return null;
+            }
+            path.add(node);
+            i += node.label.length();
+        }
+        return path;
+    }
+
+    private Node findWord(String word) {
+        List<Node> path = findPath(word);
+        return path == null ? null : path.get(path.size() - 1);
+    }
+
+    // Node có nhánh chứa mọi từ bắt đầu bằng prefix (prefix có thể dừng giữa cạnh)
+    private Node findPrefix(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            Node child = node.children.get(prefix.charAt(i));
+            if (child == null) {
+                return null;
+            }
+            int common = commonPrefix(child.label, prefix, i);
+            if (i + common == prefix.length()) {
+                return child;
+            }
+            if (common < child.label.length()) {
+                return null;
+            }
+            node = child;
+            i += common;
+        }
+        return node;
+    }
+
+    // Từ dưới lên: bỏ node không còn gợi ý, gộp node chỉ còn 1 con vào con, tính lại top của các node còn lại
+    private static void refresh(List<Node> path) {
+        for (int depth = path.size() - 1; depth >= 0; depth--) {
+            Node node = path.get(depth);
+            if (depth > 0 && node.terminals.isEmpty() && node.children.size() <= 1) {
+                Node parent = path.get(depth - 1);
+                if (node.children.isEmpty()) {
+                    parent.children.remove(node.label.charAt(0));
+                } else {
+                    Node only = node.children.firstEntry().getValue();
+                    only.label = node.label + only.label;
+                    parent.children.put(only.label.charAt(0), only);
+                }
+                continue;
+            }
+            node.top = top(node);
+        }
+    }
+
+    private static Suggestion[] top(Node node) {
+        TreeSet<Suggestion> best = new TreeSet<>(RANK);
+        for (Suggestion suggestion : node.terminals) {
+            if (best.size() == MAX_SUGGESTIONS) {
+                break;
+            }
+            best.add(suggestion);
+        }
+        for (Node child : node.children.values()) {
+            for (Suggestion suggestion : child.top) {
+                if (best.size() == MAX_SUGGESTIONS && RANK.compare(suggestion, best.last()) >= 0) {
+                    break;
+                }
+                if (best.add(suggestion) && best.size() > MAX_SUGGESTIONS) {
+                    best.pollLast();
+                }
+            }
+        }
+        return best.toArray(NO_SUGGESTIONS);
+    }
+
+    private static int commonPrefix(String label, String text, int offset) {
+        int length = 0;
+        while (length < label.length() && offset + length < text.length()
+                && label.charAt(length) == text.charAt(offset + length)) {
+            length++;
+        }
+        return length;
+    }
+
+    // Bản mới mỗi lần trả về, không chia sẻ DTO giữa các request
+    private static SuggestionResponse toResponse(Suggestion suggestion) {
+        return SuggestionResponse.builder().text(suggestion.text).type(suggestion.type).build();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.product_service.service;
+
+import com.example.event.dto.ReviewRatingEvent;
+import com.example.product_service.dto.response.RatingSummaryResponse;
+import com.example.product_service.repository.ProductRepository;
+import com.example.product_service.repository.ReviewClientHttp;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Đồng bộ tổng hợp đánh giá trên bảng product với dữ liệu review-service: backfill 1 lần khi chưa có
+// và tính lại khi admin cần đối soát. Sự kiện review-rating đến trong lúc đó vẫn được áp dụng
+// nếu mới hơn, vì mọi bản ghi đều so asOf trước khi ghi đè
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RatingSummaries {
+    static final int PAGE_SIZE = 500;
+
+    final ProductRepository productRepository;
+    final ReviewClientHttp reviewClientHttp;
+    final TransactionTemplate transactionTemplate;
+    final ActiveCatalog activeCatalog;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnce() {
+        try {
+            if (!productRepository.existsByRating_RatingAsOfGreaterThan(0)) {
+                rebuild();
+            }
+        } catch (Exception e) {
+            log.error("Could not backfill rating summaries", e);
+        }
+    }
+
+    // Đọc hết tổng hợp từ review-service trước (không giữ transaction khi gọi mạng), rồi ghi trong 1 transaction
+    public void rebuild() {
+        List<RatingSummaryResponse> pages = new ArrayList<>();
+        long afterId = 0;
+        RatingSummaryResponse page;
+        do {
+            page = reviewClientHttp.getRatingSummaries(afterId, PAGE_SIZE).getData();
+            pages.add(page);
+            if (!page.getSummaries().isEmpty()) {
+                afterId = page.getSummaries().get(page.getSummaries().size() - 1).getProductId();
+            }
+        } while (page.getSummaries().size() == PAGE_SIZE);
+
+        // Trang đầu đọc sớm nhất: sản phẩm không xuất hiện ở trang nào không có review tại thời điểm đó
+        long firstAsOf = pages.get(0).getAsOf();
+        transactionTemplate.executeWithoutResult(tx -> {
+            productRepository.resetRatingsAsOf(firstAsOf);
+            int products = 0;
+            for (RatingSummaryResponse summaries : pages) {
+                for (ReviewRatingEvent summary : summaries.getSummaries()) {
+                    products += productRepository.applyRatingSummary(summary.getProductId(),
+                            summary.getRatingCount(), summary.getRatingSum(), summary.getOneStar(),
+                            summary.getTwoStar(), summary.getThreeStar(), summary.getFourStar(),
+                            summary.getFiveStar(), summary.getAsOf());
+                }
+            }
+            activeCatalog.refreshAll();
+            log.info("Rating summaries rebuilt for {} reviewed products", products);
+        });
+    }
+}
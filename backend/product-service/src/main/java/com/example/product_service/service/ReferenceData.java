@@ -0,0 +1,178 @@
+package com.example.product_service.service;
+
+import com.example.product_service.dto.response.CategoryResponse;
+import com.example.product_service.dto.response.PageResponse;
+import com.example.product_service.dto.response.WeightTypeResponse;
+import com.example.product_service.entity.Category;
+import com.example.product_service.exception.AppException;
+import com.example.product_service.exception.ErrorCode;
+import com.example.product_service.mapper.CategoryMapper;
+import com.example.product_service.mapper.WeightTypeMapper;
+import com.example.product_service.repository.CategoryRepository;
+import com.example.product_service.repository.WeightTypeRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+// Danh mục và loại khối lượng: bảng nhỏ, ít thay đổi nên nạp toàn bộ vào map bất biến khi khởi động.
+// Mọi thao tác ghi của admin gọi changed() để thay nguyên khối (người đọc không cần khóa) và báo các instance
+// khác nạp lại qua kênh của CatalogSync; mỗi lần nạp cũng tính lại ETag trong CatalogVersions.
+// DTO trả ra là bản sao để nơi gọi sửa không ảnh hưởng snapshot
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ReferenceData {
+    final CategoryRepository categoryRepository;
+    final WeightTypeRepository weightTypeRepository;
+    final CategoryMapper categoryMapper;
+    final WeightTypeMapper weightTypeMapper;
+    final RedisTemplate<String, Object> redisTemplate;
+    final ObjectMapper objectMapper;
+    final CatalogVersions catalogVersions;
+
+    // null cho tới lần nạp đầu tiên
+    volatile Snapshot snapshot;
+
+    // Các danh sách sắp xếp theo id tăng dần
+    private record Snapshot(List<CategoryResponse> categories, Map<Long, CategoryResponse> categoriesById,
+                            List<WeightTypeResponse> weightTypes, Map<Long, WeightTypeResponse> weightTypesById,
+                            Map<Double, Long> weightTypeIdsByValue) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reload() {
+        List<CategoryResponse> categories = categoryRepository.findAll().stream()
+                .map(categoryMapper::toCategoryResponse)
+                .sorted(Comparator.comparingLong(CategoryResponse::getId_category))
+                .toList();
+        List<WeightTypeResponse> weightTypes = weightTypeRepository.findAll().stream()
+                .map(weightTypeMapper::toWeightTypeResponse)
+                .sorted(Comparator.comparing(WeightTypeResponse::getId_weight_type))
+                .toList();
+        snapshot = new Snapshot(
+                categories,
+                categories.stream().collect(Collectors.toUnmodifiableMap(
+                        CategoryResponse::getId_category, Function.identity())),
+                weightTypes,
+                weightTypes.stream().collect(Collectors.toUnmodifiableMap(
+                        WeightTypeResponse::getId_weight_type, Function.identity())),
+                // Trùng khối lượng thì lấy loại có id nhỏ nhất như khi import
+                weightTypes.stream().collect(Collectors.toUnmodifiableMap(
+                        WeightTypeResponse::getValue, WeightTypeResponse::getId_weight_type, (first, second) -> first)));
+        // ETag của danh mục / loại khối lượng tính từ đúng nội dung trả cho client
+        try {
+            catalogVersions.referenceDataLoaded(objectMapper.writeValueAsString(categories),
+                    objectMapper.writeValueAsString(weightTypes));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize reference data", e);
+        }
+        log.info("Reference data loaded: {} categories, {} weight types", categories.size(), weightTypes.size());
+    }
+
+    // Gọi sau khi admin ghi danh mục hoặc loại khối lượng
+    public void changed() {
+        reload();
+        try {
+            redisTemplate.convertAndSend(CatalogSync.CHANNEL, CatalogSync.referenceChanged());
+        } catch (Exception e) {
+            log.warn("Could not publish reference data change", e);
+        }
+    }
+
+    public Optional<CategoryResponse> findCategory(Long categoryId) {
+        return Optional.ofNullable(categoryId != null ? current().categoriesById().get(categoryId) : null)
+                .map(ReferenceData::copyCategory);
+    }
+
+    public Set<Long> getCategoryIds() {
+        return current().categoriesById().keySet();
+    }
+
+    // Entity chỉ mang id + tên để gán vào Product, không cần đọc lại bảng category
+    public Category getCategoryReference(Long categoryId) {
+        CategoryResponse category = findCategory(categoryId)
+                .orElseThrow(() -> new AppException(ErrorCode.CATEGORY_NOT_FOUND));
+        return Category.builder()
+                .id_category(category.getId_category())
+                .name(category.getName())
+                .build();
+    }
+
+    public PageResponse<CategoryResponse> getCategoryPage(int page, int size) {
+        return toPage(current().categories(), page, size, ReferenceData::copyCategory);
+    }
+
+    public PageResponse<CategoryResponse> getCategoryPageByCursor(String cursor, int size, boolean withCount) {
+        List<CategoryResponse> categories = current().categories();
+        long afterId = KeysetPage.afterId(cursor);
+        List<CategoryResponse> rows = categories.stream()
+                .filter(category -> category.getId_category() > afterId)
+                .limit(size + 1L)
+                .toList();
+        return KeysetPage.toPageResponse(rows, size, CategoryResponse::getId_category, ReferenceData::copyCategory,
+                withCount, categories::size);
+    }
+
+    public Optional<WeightTypeResponse> findWeightType(Long weightTypeId) {
+        return Optional.ofNullable(weightTypeId != null ? current().weightTypesById().get(weightTypeId) : null)
+                .map(ReferenceData::copyWeightType);
+    }
+
+    public Map<Double, Long> getWeightTypeIdsByValue() {
+        return current().weightTypeIdsByValue();
+    }
+
+    public PageResponse<WeightTypeResponse> getWeightTypePage(int page, int size) {
+        return toPage(current().weightTypes(), page, size, ReferenceData::copyWeightType);
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            // Được gọi trước ApplicationReadyEvent
+            reload();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    private static CategoryResponse copyCategory(CategoryResponse category) {
+        return CategoryResponse.builder()
+                .id_category(category.getId_category())
+                .name(category.getName())
+                .build();
+    }
+
+    private static WeightTypeResponse copyWeightType(WeightTypeResponse weightType) {
+        return WeightTypeResponse.builder()
+                .id_weight_type(weightType.getId_weight_type())
+                .value(weightType.getValue())
+                .unit(weightType.getUnit())
+                .build();
+    }
+
+    private static <T> PageResponse<T> toPage(List<T> rows, int page, int size, UnaryOperator<T> copy) {
+        int total = rows.size();
+        int from = (int) Math.min(total, Math.max(0L, (long) (page - 1) * size));
+        int to = (int) Math.min(total, (long) from + size);
+        return PageResponse.<T>builder()
+                .currentPage(page)
+                .totalPages((total + size - 1) / size)
+                .totalElements(total)
+                .elements(rows.subList(from, to).stream().map(copy).toList())
+                .build();
+    }
+}
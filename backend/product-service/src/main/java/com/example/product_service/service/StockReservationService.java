@@ -0,0 +1,190 @@
+package com.example.product_service.service;
+
+import com.example.product_service.dto.request.OrderItemRequest;
+import com.example.product_service.dto.response.StockReservationResponse;
+import com.example.product_service.entity.ProcessedEvent;
+import com.example.product_service.entity.Product;
+import com.example.product_service.entity.StockReservation;
+import com.example.product_service.entity.StockReservationLine;
+import com.example.product_service.entity.WeightProduct;
+import com.example.product_service.exception.AppException;
+import com.example.product_service.exception.ErrorCode;
+import com.example.product_service.repository.ProcessedEventRepository;
+import com.example.product_service.repository.ProductRepository;
+import com.example.product_service.repository.StockReservationRepository;
+import com.example.product_service.repository.WeightProductRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Giữ hàng tạm thời cho đơn đang checkout. Lượt giữ được lưu trong bảng stock_reservation;
+// khi giữ hàng thì khóa các dòng weight_product liên quan nên các checkout khác sản phẩm không chờ nhau,
+// kể cả khi chạy nhiều instance
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StockReservationService {
+    final ProductRepository productRepository;
+    final WeightProductRepository weightProductRepository;
+    final StockReservationRepository stockReservationRepository;
+    final ProcessedEventRepository processedEventRepository;
+    final ProductService productService;
+    final ProductSuggestionIndex productSuggestionIndex;
+    final TransactionTemplate transactionTemplate;
+
+    static final String RESTORE_EVENT_PREFIX = "restore-";
+
+    @Value("${stock.reservation.ttl-ms:900000}")
+    long reservationTtlMs;
+
+    @Transactional
+    public StockReservationResponse reserve(List<OrderItemRequest> items) {
+        List<String> outOfStockProducts = new ArrayList<>();
+        // id WeightProduct -> số lượng, sắp theo id để khóa theo thứ tự cố định
+        Map<Long, Integer> quantities = new TreeMap<>();
+        Map<Long, Long> productIdsByWeightProduct = new HashMap<>();
+        Map<Long, String> labels = new HashMap<>();
+
+        Set<Long> productIds = items.stream()
+                .map(item -> Long.valueOf(item.getProductCode()))
+                .collect(Collectors.toSet());
+        Map<Long, Product> products = productRepository.findAllWithWeightProductsByIdIn(productIds).stream()
+                .collect(Collectors.toMap(Product::getId_product, Function.identity()));
+
+        for (OrderItemRequest item : items) {
+            Product product = products.get(Long.valueOf(item.getProductCode()));
+            if (product == null) {
+                outOfStockProducts.add("Sản phẩm có mã " + item.getProductCode() + " không tồn tại");
+                continue;
+            }
+            WeightProduct weightProduct = product.getWeightProducts().stream()
+                    .filter(wp -> wp.getWeightType().getValue() == item.getWeight())
+                    .findFirst()
+                    .orElse(null);
+            if (weightProduct == null) {
+                outOfStockProducts.add(product.getName() + " (" + item.getWeight() + "kg)");
+                continue;
+            }
+            quantities.merge(weightProduct.getId(), item.getQuantity(), Integer::sum);
+            productIdsByWeightProduct.put(weightProduct.getId(), product.getId_product());
+            labels.put(weightProduct.getId(), product.getName() + " (" + weightProduct.getWeightType().getValue() + "kg)");
+        }
+        if (!outOfStockProducts.isEmpty()) {
+            return StockReservationResponse.builder().outOfStockProducts(outOfStockProducts).build();
+        }
+
+        // Khóa dòng tồn kho tới khi commit rồi mới cộng số đang giữ, để 2 lượt giữ đồng thời không cùng lấy 1 phần hàng
+        Map<Long, Integer> stocks = weightProductRepository.lockStockByIdIn(quantities.keySet()).stream()
+                .collect(Collectors.toMap(row -> ((Number) row[0]).longValue(), row -> ((Number) row[1]).intValue()));
+        Map<Long, Integer> held = stockReservationRepository.sumHeldByWeightProductIdIn(quantities.keySet()).stream()
+                .collect(Collectors.toMap(row -> (Long) row[0], row -> ((Number) row[1]).intValue()));
+        quantities.forEach((weightProductId, quantity) -> {
+            int available = stocks.getOrDefault(weightProductId, 0) - held.getOrDefault(weightProductId, 0);
+            if (available < quantity) {
+                outOfStockProducts.add(labels.get(weightProductId));
+            }
+        });
+        if (!outOfStockProducts.isEmpty()) {
+            return StockReservationResponse.builder().outOfStockProducts(outOfStockProducts).build();
+        }
+
+        long expirationTime = System.currentTimeMillis() + reservationTtlMs;
+        StockReservation reservation = StockReservation.builder()
+                .id(UUID.randomUUID().toString())
+                .status(StockReservation.Status.HELD)
+                .expiresAt(new Timestamp(expirationTime))
+                .build();
+        quantities.forEach((weightProductId, quantity) -> reservation.getLines().add(StockReservationLine.builder()
+                .reservation(reservation)
+                .weightProductId(weightProductId)
+                .productId(productIdsByWeightProduct.get(weightProductId))
+                .quantity(quantity)
+                .build()));
+        stockReservationRepository.save(reservation);
+        return StockReservationResponse.builder()
+                .reservationId(reservation.getId())
+                .outOfStockProducts(outOfStockProducts)
+                .expiresAt(expirationTime)
+                .build();
+    }
+
+    // Trừ tồn kho thật trong DB và đánh dấu CONFIRMED trong cùng transaction, nên lỗi giữa chừng thì lượt giữ
+    // vẫn còn để thử lại. Xác nhận lại lượt đã CONFIRMED không làm gì (sự kiện outbox có thể tới nhiều lần)
+    @Transactional
+    public void confirm(String reservationId) {
+        StockReservation reservation = stockReservationRepository.lockById(reservationId)
+                .orElseThrow(() -> new AppException(ErrorCode.RESERVATION_NOT_FOUND));
+        if (reservation.getStatus() == StockReservation.Status.CONFIRMED) {
+            return;
+        }
+        if (reservation.getStatus() == StockReservation.Status.RELEASED) {
+            // Đơn đã commit nhưng lượt giữ đã hết hạn: vẫn trừ nếu còn đủ hàng
+            log.warn("Confirming released stock reservation {}", reservationId);
+        }
+
+        Map<Long, Integer> quantities = new TreeMap<>();
+        Map<Long, Integer> productQuantities = new HashMap<>();
+        for (StockReservationLine line : reservation.getLines()) {
+            quantities.merge(line.getWeightProductId(), line.getQuantity(), Integer::sum);
+            productQuantities.merge(line.getProductId(), line.getQuantity(), Integer::sum);
+        }
+        // Đổi trạng thái trước: câu UPDATE tồn kho flush rồi clear persistence context
+        reservation.setStatus(StockReservation.Status.CONFIRMED);
+        productService.confirmReservedStock(quantities, productQuantities);
+        runAfterCommit(() -> productSuggestionIndex.recordSales(productQuantities));
+    }
+
+    @Transactional
+    public void release(String reservationId) {
+        stockReservationRepository.lockById(reservationId)
+                .filter(reservation -> reservation.getStatus() == StockReservation.Status.HELD)
+                .ifPresent(reservation -> reservation.setStatus(StockReservation.Status.RELEASED));
+    }
+
+    // Đơn không xác nhận được lượt giữ thì chưa bị trừ kho: ghi sẵn id sự kiện hoàn kho của đơn
+    // (order-service dùng "restore-<id đơn>") để updateStock bỏ qua khi đơn bị hủy / trả hàng
+    @Transactional
+    public void skipRestore(String orderId) {
+        String restoreEventId = RESTORE_EVENT_PREFIX + orderId;
+        if (!processedEventRepository.existsById(restoreEventId)) {
+            processedEventRepository.save(ProcessedEvent.builder().id(restoreEventId).build());
+        }
+    }
+
+    // Giải phóng các lượt giữ hàng quá hạn (checkout bị bỏ dở)
+    @Scheduled(fixedDelayString = "${stock.reservation.sweep-interval-ms:30000}")
+    public void releaseExpiredReservations() {
+        Integer released = transactionTemplate.execute(tx ->
+                stockReservationRepository.releaseExpired(new Timestamp(System.currentTimeMillis())));
+        if (released != null && released > 0) {
+            log.info("Released {} expired stock reservations", released);
+        }
+    }
+
+    private static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.example.product_service.service;
+
+import com.example.event.dto.StockAlertEvent;
+import com.example.product_service.entity.Product;
+import com.example.product_service.repository.WeightProductRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Theo dõi tồn kho từng WeightProduct trong bộ nhớ. Sau mỗi lần tồn kho thay đổi (đã commit) cộng phần chênh lệch
+// mà câu UPDATE có điều kiện đã áp dụng, hoặc lấy mức tuyệt đối từ entity vừa lưu, nên không tốn thêm query.
+// Định kỳ đồng bộ lại toàn bộ từ DB để sửa sai lệch và nhận cả thay đổi không đi qua đây
+// (SQL trực tiếp, instance khác).
+// Khi vượt ngưỡng thì đánh dấu chờ gửi; việc gửi cảnh báo chạy định kỳ nên tồn kho lên xuống liên tục quanh
+// ngưỡng trong 1 chu kỳ chỉ sinh tối đa 1 sự kiện. Mỗi lần chuyển mức chỉ 1 instance gửi lên Kafka
+// (GETSET trên Redis), SSE thì instance nào cũng gửi cho client của mình
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StockWatch {
+    public static final String STOCK_ALERT_TOPIC = "stock-alert";
+    // + id WeightProduct -> mức đã gửi gần nhất, dùng chung giữa các instance
+    static final String PUBLISHED_KEY_PREFIX = "stock-alert-level::";
+
+    final WeightProductRepository weightProductRepository;
+    final KafkaTemplate<String, Object> kafkaTemplate;
+    final RedisTemplate<String, Object> redisTemplate;
+
+    // id WeightProduct -> mức tồn kho
+    final Map<Long, StockLevel> levels = new ConcurrentHashMap<>();
+    // (id sản phẩm, khối lượng) -> mức tồn kho, cho các dòng updateStock chỉ biết sản phẩm + khối lượng
+    final Map<StockKey, StockLevel> levelsByKey = new ConcurrentHashMap<>();
+    // id sản phẩm -> các dòng đang theo dõi, để bỏ dòng đã xóa mà không duyệt toàn bộ
+    final Map<Long, Set<StockLevel>> levelsByProduct = new ConcurrentHashMap<>();
+    // id WeightProduct có mức cảnh báo thay đổi kể từ lần gửi trước
+    final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    volatile boolean ready;
+
+    @Value("${stock.alert.low-threshold:5}")
+    int lowThreshold;
+
+    @Value("${stock.alert.sse-timeout-ms:1800000}")
+    long sseTimeoutMs;
+
+    public enum Level {
+        IN_STOCK,
+        LOW_STOCK,
+        OUT_OF_STOCK
+    }
+
+    private record StockKey(long productId, double weight) {
+    }
+
+    private static class StockLevel {
+        final long weightProductId;
+        final long productId;
+        String productName;
+        double weight;
+        int stock;
+        // System.nanoTime() lúc bắt đầu câu đọc (hoặc lúc cộng chênh lệch) đã cho ra stock;
+        // bản đọc bắt đầu sớm hơn không được ghi đè
+        long readAt;
+        Level current;
+        Level published;
+
+        StockLevel(long weightProductId, long productId) {
+            this.weightProductId = weightProductId;
+            this.productId = productId;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        try {
+            levels.clear();
+            levelsByKey.clear();
+            levelsByProduct.clear();
+            pending.clear();
+            long readAt = System.nanoTime();
+            // Mức lúc khởi động coi như đã gửi; admin xem danh sách hiện tại qua getCurrentAlerts
+            weightProductRepository.findAllStockLevels().forEach(row -> track(row, readAt, true));
+            ready = true;
+            log.info("Stock watch started with {} weight products", levels.size());
+        } catch (Exception e) {
+            log.error("Could not load stock levels", e);
+        }
+    }
+
+    // Đồng bộ lại với DB; dòng đã bị xóa thì bỏ theo dõi
+    @Scheduled(fixedDelayString = "${stock.alert.resync-ms:60000}", initialDelayString = "${stock.alert.resync-ms:60000}")
+    public void resync() {
+        if (!ready) {
+            return;
+        }
+        try {
+            long readAt = System.nanoTime();
+            Set<Long> seen = new HashSet<>();
+            weightProductRepository.findAllStockLevels().forEach(row -> seen.add(track(row, readAt, false)));
+            for (StockLevel level : List.copyOf(levels.values())) {
+                if (!seen.contains(level.weightProductId)) {
+                    untrackIfOlder(level, readAt);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Could not resync stock levels", e);
+        }
+    }
+
+    // Câu UPDATE có điều kiện đã cộng delta vào dòng (sản phẩm, khối lượng); trong transaction thì đợi commit.
+    // Dòng chưa được theo dõi (vừa thêm) sẽ được nhận ở lần đồng bộ sau
+    public void stockAdded(long productId, double weight, int delta) {
+        runAfterCommit(() -> add(levelsByKey.get(new StockKey(productId, weight)), delta));
+    }
+
+    public void stockAddedById(long weightProductId, int delta) {
+        runAfterCommit(() -> add(levels.get(weightProductId), delta));
+    }
+
+    // Sản phẩm vừa được lưu: mức tuyệt đối lấy từ chính entity, khối lượng không còn thì bỏ theo dõi
+    public void productSaved(Product product) {
+        long productId = product.getId_product();
+        List<Object[]> rows = product.getWeightProducts() == null ? List.of() : product.getWeightProducts().stream()
+                .map(weightProduct -> new Object[]{weightProduct.getId(), productId, product.getName(),
+                        weightProduct.getWeightType().getValue(), weightProduct.getStock()})
+                .toList();
+        runAfterCommit(() -> {
+            if (ready) {
+                replaceProduct(productId, rows, System.nanoTime());
+            }
+        });
+    }
+
+    // Sản phẩm vừa import (ghi bằng JDBC nên không có entity): đọc lại cả lô bằng 1 query
+    public void productsImported(Collection<Long> productIds) {
+        runAfterCommit(() -> {
+            if (!ready || productIds.isEmpty()) {
+                return;
+            }
+            long readAt = System.nanoTime();
+            Map<Long, List<Object[]>> rowsByProduct = new HashMap<>();
+            productIds.forEach(productId -> rowsByProduct.put(productId, new ArrayList<>()));
+            weightProductRepository.findStockLevelsByProductIdIn(productIds).forEach(row ->
+                    rowsByProduct.get(((Number) row[1]).longValue()).add(row));
+            rowsByProduct.forEach((productId, rows) -> replaceProduct(productId, rows, readAt));
+        });
+    }
+
+    // Các khối lượng đang sắp hết hoặc đã hết hàng
+    public List<StockAlertEvent> getCurrentAlerts() {
+        List<StockAlertEvent> alerts = new ArrayList<>();
+        for (StockLevel level : levels.values()) {
+            synchronized (level) {
+                if (level.current != Level.IN_STOCK) {
+                    alerts.add(toEvent(level, level.current));
+                }
+            }
+        }
+        alerts.sort(Comparator.comparingInt(StockAlertEvent::getStock)
+                .thenComparingLong(StockAlertEvent::getProductId));
+        return alerts;
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        emitters.add(emitter);
+        try {
+            emitter.send(SseEmitter.event().name("snapshot").data(getCurrentAlerts()));
+        } catch (IOException e) {
+            emitters.remove(emitter);
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${stock.alert.debounce-ms:30000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<StockAlertEvent> events = new ArrayList<>();
+        for (Iterator<Long> iterator = pending.iterator(); iterator.hasNext(); ) {
+            StockLevel level = levels.get(iterator.next());
+            iterator.remove();
+            if (level == null) {
+                continue;
+            }
+            synchronized (level) {
+                // Đã quay lại mức đã gửi trong chu kỳ này thì không cần báo
+                if (level.current != level.published) {
+                    level.published = level.current;
+                    events.add(toEvent(level, level.current));
+                }
+            }
+        }
+        for (StockAlertEvent event : events) {
+            if (claim(event)) {
+                kafkaTemplate.send(STOCK_ALERT_TOPIC, String.valueOf(event.getProductId()), event);
+            }
+            broadcast(event);
+        }
+        if (!events.isEmpty()) {
+            log.info("Published {} stock alerts", events.size());
+        }
+    }
+
+    // row: [id, id sản phẩm, tên sản phẩm, khối lượng, stock]. Trả về id WeightProduct
+    private long track(Object[] row, long readAt, boolean initial) {
+        long weightProductId = ((Number) row[0]).longValue();
+        long productId = ((Number) row[1]).longValue();
+        String productName = (String) row[2];
+        double weight = ((Number) row[3]).doubleValue();
+        int stock = ((Number) row[4]).intValue();
+        StockLevel level = levels.computeIfAbsent(weightProductId, id -> {
+            StockLevel created = new StockLevel(id, productId);
+            created.weight = weight;
+            created.stock = stock;
+            created.readAt = readAt;
+            created.current = classify(stock);
+            // Dòng mới theo dõi giữa chừng: coi như đang còn hàng để vẫn báo nếu đã dưới ngưỡng
+            created.published = initial ? created.current : Level.IN_STOCK;
+            levelsByProduct.computeIfAbsent(productId, key -> ConcurrentHashMap.newKeySet()).add(created);
+            return created;
+        });
+        synchronized (level) {
+            if (readAt >= level.readAt) {
+                level.productName = productName;
+                if (level.weight != weight) {
+                    levelsByKey.remove(new StockKey(productId, level.weight), level);
+                    level.weight = weight;
+                }
+                level.stock = stock;
+                level.readAt = readAt;
+                level.current = classify(stock);
+            }
+            levelsByKey.put(new StockKey(productId, level.weight), level);
+            if (level.current != level.published) {
+                pending.add(weightProductId);
+            }
+        }
+        return weightProductId;
+    }
+
+    private void add(StockLevel level, int delta) {
+        if (!ready || level == null) {
+            return;
+        }
+        synchronized (level) {
+            // Đồng bộ đã bắt đầu đọc trước lúc này thì không ghi đè; nếu commit rơi đúng lúc đồng bộ đang đọc
+            // thì có thể cộng trùng, lần đồng bộ sau sẽ sửa lại
+            level.stock += delta;
+            level.readAt = System.nanoTime();
+            level.current = classify(level.stock);
+            if (level.current != level.published) {
+                pending.add(level.weightProductId);
+            }
+        }
+    }
+
+    private void replaceProduct(long productId, List<Object[]> rows, long readAt) {
+        Set<Long> seen = new HashSet<>();
+        rows.forEach(row -> seen.add(track(row, readAt, false)));
+        Set<StockLevel> tracked = levelsByProduct.get(productId);
+        if (tracked == null) {
+            return;
+        }
+        for (StockLevel level : List.copyOf(tracked)) {
+            if (!seen.contains(level.weightProductId)) {
+                untrackIfOlder(level, readAt);
+            }
+        }
+    }
+
+    private void untrackIfOlder(StockLevel level, long readAt) {
+        synchronized (level) {
+            if (level.readAt > readAt) {
+                return;
+            }
+            levels.remove(level.weightProductId, level);
+            levelsByKey.remove(new StockKey(level.productId, level.weight), level);
+            levelsByProduct.computeIfPresent(level.productId, (productId, tracked) -> {
+                tracked.remove(level);
+                return tracked.isEmpty() ? null : tracked;
+            });
+            pending.remove(level.weightProductId);
+        }
+    }
+
+    // Instance đầu tiên đổi mức đã gửi trên Redis sẽ gửi sự kiện; Redis lỗi thì vẫn gửi (có thể trùng)
+    private boolean claim(StockAlertEvent event) {
+        try {
+            Object previous = redisTemplate.opsForValue()
+                    .getAndSet(PUBLISHED_KEY_PREFIX + event.getWeightProductId(), event.getLevel());
+            return !event.getLevel().equals(previous);
+        } catch (Exception e) {
+            log.warn("Could not check published stock alert level", e);
+            return true;
+        }
+    }
+
+    private Level classify(int stock) {
+        if (stock <= 0) {
+            return Level.OUT_OF_STOCK;
+        }
+        return stock <= lowThreshold ? Level.LOW_STOCK : Level.IN_STOCK;
+    }
+
+    private StockAlertEvent toEvent(StockLevel level, Level alertLevel) {
+        return StockAlertEvent.builder()
+                .productId(level.productId)
+                .productName(level.productName)
+                .weightProductId(level.weightProductId)
+                .weight(level.weight)
+                .stock(level.stock)
+                .threshold(lowThreshold)
+                .level(alertLevel.name())
+                .occurredAt(System.currentTimeMillis())
+                .build();
+    }
+
+    private void broadcast(StockAlertEvent event) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name("stock-alert").data(event));
+            } catch (IOException | IllegalStateException e) {
+                // Client đã đóng kết nối
+                emitters.remove(emitter);
+            }
+        }
+    }
+
+    private static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
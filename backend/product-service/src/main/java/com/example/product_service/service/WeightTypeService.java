@@ -10,13 +10,8 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -24,45 +19,40 @@ import java.util.List;
 public class WeightTypeService {
     WeightTypeRepository weightTypeRepository;
     WeightTypeMapper weightTypeMapper;
+    ActiveCatalog activeCatalog;
+    ReferenceData referenceData;
 
     // Method to fetch a weight type by id
     public WeightTypeResponse getWeightTypeById(Long weightTypeId) {
-        return weightTypeMapper.toWeightTypeResponse(weightTypeRepository.findById(weightTypeId).orElse(null));
+        return referenceData.findWeightType(weightTypeId).orElse(null);
     }
 
     // Method to add a new weight type
     public WeightTypeResponse createWeightType(WeightTypeRequest weightTypeRequest) {
         log.info(weightTypeRequest.toString());
         WeightType weightType = weightTypeRepository.save(weightTypeMapper.toWeightType(weightTypeRequest));
+        referenceData.changed();
         return weightTypeMapper.toWeightTypeResponse(weightType);
     }
 
     // Method to update a weight type
+    // Khối lượng nằm trong JSON sản phẩm nên dựng lại snapshot (kéo theo ETag sản phẩm đổi)
     public WeightTypeResponse updateWeightType(Long weightTypeId, WeightTypeRequest weightTypeRequest) {
         WeightType weightType = weightTypeMapper.updateWeightType(weightTypeId, weightTypeRequest);
-        return weightTypeMapper.toWeightTypeResponse(weightTypeRepository.save(weightType));
+        WeightTypeResponse response = weightTypeMapper.toWeightTypeResponse(weightTypeRepository.save(weightType));
+        referenceData.changed();
+        activeCatalog.refreshAll();
+        return response;
     }
 
     // Method to delete a weight type
     public void deleteWeightType(Long weightTypeId) {
         weightTypeRepository.deleteById(weightTypeId);
+        referenceData.changed();
     }
 
 
     public PageResponse<WeightTypeResponse> getAllWeightTypes(int page, int size) {
-        Pageable pageable = PageRequest.of(page - 1, size);
-        Page<WeightType> weightTypePage = weightTypeRepository.findAll(pageable);
-
-        List<WeightTypeResponse> weightTypeResponses = weightTypePage.getContent()
-                .stream()
-                .map(weightTypeMapper::toWeightTypeResponse)
-                .toList();
-
-        return PageResponse.<WeightTypeResponse>builder()
-                .currentPage(page)
-                .totalPages(weightTypePage.getTotalPages())
-                .totalElements(weightTypePage.getTotalElements())
-                .elements(weightTypeResponses)
-                .build();
+        return referenceData.getWeightTypePage(page, size);
     }
 }
@@ -0,0 +1,63 @@
+package com.example.product_service.service;
+
+import com.example.product_service.dto.request.FilterRequest;
+import com.example.product_service.dto.response.FacetCountResponse;
+import com.example.product_service.entity.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Lọc theo khoảng giá trên chỉ mục facet trong bộ nhớ, không cần DB
+class ProductFacetIndexTests {
+    ProductFacetIndex productFacetIndex;
+
+    @BeforeEach
+    void seed() {
+        productFacetIndex = new ProductFacetIndex(null, null);
+        productFacetIndex.index(product(1, 10_000d));
+        productFacetIndex.index(product(2, 20_000d));
+        productFacetIndex.index(product(3, 30_000d));
+    }
+
+    @Test
+    void priceRangeIsInclusive() {
+        FilterRequest filter = FilterRequest.builder().minPrice(10_000d).maxPrice(20_000d).build();
+
+        ProductFacetIndex.FilterResult result = productFacetIndex.filter(filter, 1, 10);
+
+        assertEquals(List.of(1L, 2L), result.productIds());
+        assertEquals(2, result.totalElements());
+    }
+
+    @Test
+    void invertedPriceRangeMatchesNothing() {
+        FilterRequest filter = FilterRequest.builder().minPrice(30_000d).maxPrice(10_000d).build();
+
+        ProductFacetIndex.FilterResult result = productFacetIndex.filter(filter, 1, 10);
+        assertTrue(result.productIds().isEmpty());
+        assertEquals(0, result.totalElements());
+        assertTrue(productFacetIndex.matchingIds(filter).isEmpty());
+
+        FacetCountResponse counts = productFacetIndex.countFacets(filter);
+        assertEquals(0, counts.getTotalElements());
+        // Nhóm giá bỏ qua điều kiện giá của chính nó nên vẫn thấy khoảng giá đầy đủ
+        assertEquals(10_000d, counts.getMinPrice());
+        assertEquals(30_000d, counts.getMaxPrice());
+    }
+
+    @Test
+    void openEndedPriceRange() {
+        FilterRequest filter = FilterRequest.builder().minPrice(25_000d).build();
+
+        assertEquals(List.of(3L), productFacetIndex.filter(filter, 1, 10).productIds());
+        assertTrue(productFacetIndex.matchingIds(FilterRequest.builder().maxPrice(5_000d).build()).isEmpty());
+    }
+
+    private static Product product(long id, double price) {
+        return Product.builder().id_product(id).name("Sản phẩm " + id).price(price).isActive(true).build();
+    }
+}
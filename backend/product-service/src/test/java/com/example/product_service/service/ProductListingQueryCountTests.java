@@ -0,0 +1,130 @@
+package com.example.product_service.service;
+
+import com.example.product_service.dto.response.PageResponse;
+import com.example.product_service.dto.response.ProductResponse;
+import com.example.product_service.entity.Category;
+import com.example.product_service.entity.Product;
+import com.example.product_service.entity.WeightProduct;
+import com.example.product_service.entity.WeightType;
+import com.example.product_service.mapper.ProductMapperImpl;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Số câu SQL của 1 trang sản phẩm không phụ thuộc kích thước trang: khối lượng, loại khối lượng và danh mục
+// được nạp theo lô (@BatchSize / default_batch_fetch_size) thay vì 1 query mỗi sản phẩm
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:listing;MODE=MySQL;NON_KEYWORDS=VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ProductService.class, ProductMapperImpl.class})
+class ProductListingQueryCountTests {
+    private static final int PRODUCT_COUNT = 40;
+    private static final double[] WEIGHTS = {0.5, 1, 2, 5};
+    // Trang + COUNT + danh mục + khối lượng (kèm loại khối lượng)
+    private static final long MAX_QUERIES_PER_PAGE = 5;
+
+    @MockitoBean
+    ProductSearchIndex productSearchIndex;
+    @MockitoBean
+    ProductSuggestionIndex productSuggestionIndex;
+    @MockitoBean
+    ProductFacetIndex productFacetIndex;
+    @MockitoBean
+    ImageStorageService imageStorageService;
+    @MockitoBean
+    ActiveCatalog activeCatalog;
+    @MockitoBean
+    StockWatch stockWatch;
+    @MockitoBean
+    ReferenceData referenceData;
+
+    @Autowired
+    ProductService productService;
+    @Autowired
+    TestEntityManager entityManager;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+    long categoryId;
+
+    @BeforeEach
+    void seed() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<Category> categories = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            categories.add(entityManager.persist(Category.builder().name("Danh mục " + i).build()));
+        }
+        List<WeightType> weightTypes = new ArrayList<>();
+        for (double weight : WEIGHTS) {
+            weightTypes.add(entityManager.persist(WeightType.builder().unit("kg").value(weight).build()));
+        }
+        for (int i = 1; i <= PRODUCT_COUNT; i++) {
+            Product product = Product.builder()
+                    .name("Sản phẩm " + i)
+                    .price(10_000d * i)
+                    .category(categories.get(i % categories.size()))
+                    .isActive(true)
+                    .build();
+            Set<WeightProduct> weightProducts = new HashSet<>();
+            for (WeightType weightType : weightTypes) {
+                weightProducts.add(WeightProduct.builder().product(product).weightType(weightType).stock(10).build());
+            }
+            product.setWeightProducts(weightProducts);
+            entityManager.persist(product);
+        }
+        categoryId = categories.get(0).getId_category();
+        entityManager.flush();
+    }
+
+    @Test
+    void productPageQueryCountDoesNotGrowWithPageSize() {
+        long queries = queriesFor(() -> productService.getAllProducts(1, 5), 5);
+        assertTrue(queries <= MAX_QUERIES_PER_PAGE, "product page issued " + queries + " queries");
+        assertEquals(queries, queriesFor(() -> productService.getAllProducts(1, 10), 10));
+        assertEquals(queries, queriesFor(() -> productService.getAllProducts(1, 25), 25));
+    }
+
+    @Test
+    void categoryPageQueryCountDoesNotGrowWithPageSize() {
+        long queries = queriesFor(() -> productService.getProductsByCategory(categoryId, 1, 3), 3);
+        assertTrue(queries <= MAX_QUERIES_PER_PAGE, "category page issued " + queries + " queries");
+        assertEquals(queries, queriesFor(() -> productService.getProductsByCategory(categoryId, 1, 6), 6));
+        assertEquals(queries, queriesFor(() -> productService.getProductsByCategory(categoryId, 1, 12), 12));
+    }
+
+    // Bắt đầu với persistence context rỗng để mọi entity phải nạp lại từ DB
+    private long queriesFor(Supplier<PageResponse<ProductResponse>> page, int expectedElements) {
+        entityManager.clear();
+        statistics.clear();
+        PageResponse<ProductResponse> response = page.get();
+        long queries = statistics.getPrepareStatementCount();
+        assertEquals(expectedElements, response.getElements().size());
+        response.getElements().forEach(product -> {
+            assertEquals(WEIGHTS.length, product.getWeightProducts().size());
+            assertNotNull(product.getCategory());
+        });
+        return queries;
+    }
+}
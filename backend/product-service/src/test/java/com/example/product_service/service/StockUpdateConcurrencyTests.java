@@ -0,0 +1,159 @@
+package com.example.product_service.service;
+
+import com.example.event.dto.ItemUpdateStock;
+import com.example.event.dto.UpdateStockRequest;
+import com.example.product_service.entity.Product;
+import com.example.product_service.entity.WeightProduct;
+import com.example.product_service.entity.WeightType;
+import com.example.product_service.mapper.ProductMapper;
+import com.example.product_service.repository.ProductRepository;
+import com.example.product_service.repository.WeightProductRepository;
+import com.example.product_service.repository.WeightTypeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Nhiều message trừ kho cùng lúc trên 1 dòng tồn kho (H2). Mỗi lời gọi updateStock là 1 transaction thật
+// nên test không bọc trong transaction của @DataJpaTest
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stock;MODE=MySQL;NON_KEYWORDS=VALUE;LOCK_TIMEOUT=10000",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(ProductService.class)
+class StockUpdateConcurrencyTests {
+    private static final int INITIAL_STOCK = 50;
+    private static final double WEIGHT = 1.0;
+
+    @MockitoBean
+    ProductMapper productMapper;
+    @MockitoBean
+    ProductSearchIndex productSearchIndex;
+    @MockitoBean
+    ProductSuggestionIndex productSuggestionIndex;
+    @MockitoBean
+    ProductFacetIndex productFacetIndex;
+    @MockitoBean
+    ImageStorageService imageStorageService;
+    @MockitoBean
+    ActiveCatalog activeCatalog;
+    @MockitoBean
+    StockWatch stockWatch;
+    @MockitoBean
+    ReferenceData referenceData;
+
+    @Autowired
+    ProductService productService;
+    @Autowired
+    ProductRepository productRepository;
+    @Autowired
+    WeightTypeRepository weightTypeRepository;
+    @Autowired
+    WeightProductRepository weightProductRepository;
+
+    long productId;
+    long weightProductId;
+
+    @BeforeEach
+    void seed() {
+        weightProductRepository.deleteAll();
+        productRepository.deleteAll();
+        WeightType weightType = weightTypeRepository.findAll().stream()
+                .filter(type -> type.getValue() == WEIGHT)
+                .findFirst()
+                .orElseGet(() -> weightTypeRepository.save(WeightType.builder().unit("kg").value(WEIGHT).build()));
+        Product product = Product.builder().name("Cà chua").price(20_000d).isActive(true).build();
+        WeightProduct weightProduct = WeightProduct.builder()
+                .product(product)
+                .weightType(weightType)
+                .stock(INITIAL_STOCK)
+                .build();
+        product.setWeightProducts(Set.of(weightProduct));
+        product = productRepository.save(product);
+        productId = product.getId_product();
+        weightProductId = weightProduct.getId();
+    }
+
+    @Test
+    void concurrentDecrementsNeverOversellAndReturnRejectedLines() throws Exception {
+        int messages = 40;
+        int quantity = 3;
+        List<List<ItemUpdateStock>> results = runConcurrently(messages, -quantity);
+
+        // 50 / 3 = 16 message trừ được, 24 message còn lại bị từ chối nguyên dòng
+        int accepted = INITIAL_STOCK / quantity;
+        long rejected = results.stream().filter(items -> !items.isEmpty()).count();
+        assertEquals(messages - accepted, rejected);
+        results.stream().filter(items -> !items.isEmpty()).forEach(items -> {
+            assertEquals(1, items.size());
+            assertEquals(productId, items.get(0).getProductId().longValue());
+            assertEquals(-quantity, items.get(0).getQuantity().intValue());
+        });
+        assertEquals(INITIAL_STOCK - accepted * quantity, stock());
+    }
+
+    @Test
+    void concurrentDecrementsDrainStockToExactlyZero() throws Exception {
+        int messages = 200;
+        List<List<ItemUpdateStock>> results = runConcurrently(messages, -1);
+
+        assertEquals(messages - INITIAL_STOCK, results.stream().filter(items -> !items.isEmpty()).count());
+        assertEquals(0, stock());
+    }
+
+    // Gửi các message cùng lúc; 1 luồng đọc tồn kho liên tục trong lúc chạy để bắt giá trị âm
+    private List<List<ItemUpdateStock>> runConcurrently(int messages, int quantity) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger lowestStock = new AtomicInteger(Integer.MAX_VALUE);
+        try {
+            Future<?> watcher = executor.submit(() -> {
+                while (running.get()) {
+                    lowestStock.accumulateAndGet(stock(), Math::min);
+                }
+            });
+            List<Future<List<ItemUpdateStock>>> futures = new ArrayList<>();
+            for (int i = 0; i < messages; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return productService.updateStock(new UpdateStockRequest(
+                            List.of(new ItemUpdateStock(productId, quantity, WEIGHT)), null));
+                }));
+            }
+            start.countDown();
+            List<List<ItemUpdateStock>> results = new ArrayList<>();
+            for (Future<List<ItemUpdateStock>> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            running.set(false);
+            watcher.get(30, TimeUnit.SECONDS);
+            assertTrue(lowestStock.get() >= 0, "stock went negative: " + lowestStock.get());
+            return results;
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+    }
+
+    private int stock() {
+        return weightProductRepository.findById(weightProductId).orElseThrow().getStock();
+    }
+}
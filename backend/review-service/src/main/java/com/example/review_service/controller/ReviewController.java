@@ -3,6 +3,7 @@ package com.example.review_service.controller;
 import com.example.review_service.dto.request.ReviewRequest;
 import com.example.review_service.dto.response.ApiResponse;
 import com.example.review_service.dto.response.PageResponse;
+import com.example.review_service.dto.response.RatingSummaryResponse;
 import com.example.review_service.dto.response.ReviewResponse;
 import com.example.review_service.exception.AppException;
 import com.example.review_service.exception.ErrorCode;
@@ -41,6 +42,17 @@ public class ReviewController {
                        .data(reviewService.searchReviews(keyword, page, size))
                        .build();
     }
+    // Tổng hợp đánh giá theo sản phẩm, phân trang theo id sản phẩm (product-service backfill)
+    @GetMapping("/rating-summaries")
+    public ApiResponse<RatingSummaryResponse> getRatingSummaries(
+            @RequestParam(value = "afterProductId", required = false, defaultValue = "0") long afterProductId,
+            @RequestParam(value = "size", required = false, defaultValue = "500") int size
+    ){
+        if (size < 1) throw new AppException(ErrorCode.INVALID_PAGE);
+        return ApiResponse.<RatingSummaryResponse>builder()
+                .data(reviewService.getRatingSummaries(afterProductId, size))
+                .build();
+    }
     // Get review by id
     @GetMapping("/{id}")
     public ApiResponse<ReviewResponse> getReviewById(@PathVariable long id){
@@ -0,0 +1,18 @@
+package com.example.review_service.dto.response;
+
+import com.example.event.dto.ReviewRatingEvent;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+// 1 trang tổng hợp đánh giá theo sản phẩm; asOf được lấy trước khi truy vấn nên có cả khi trang rỗng
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RatingSummaryResponse {
+    long asOf;
+    List<ReviewRatingEvent> summaries;
+}
@@ -16,6 +16,8 @@ import java.time.LocalDateTime;
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
+// Tổng hợp đánh giá theo sản phẩm chạy lại sau mỗi thay đổi review
+@Table(indexes = @Index(name = "idx_review_product", columnList = "id_product"))
 public class Review {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -23,6 +23,7 @@ public enum ErrorCode {
     ID_USER_INVALID(1006,"Id user is invalid",HttpStatus.BAD_REQUEST),
     PRODUCT_NOT_FOUND(1007,"Product not found",HttpStatus.NOT_FOUND),
     REVIEW_NOT_FOUND(1010,"Review not found",HttpStatus.NOT_FOUND),
+    INVALID_PAGE(1011,"Page and size must be at least 1",HttpStatus.BAD_REQUEST),
     ROLE_NOT_FOUND(1007,"Role not found",HttpStatus.NOT_FOUND),
     UNCATEGORIZED_EXCEPTION(9999,"uncategorized exception", HttpStatus.INTERNAL_SERVER_ERROR);
     private int code;
@@ -4,6 +4,8 @@ import com.example.review_service.dto.request.ReviewRequest;
 import com.example.review_service.dto.response.ReviewResponse;
 import com.example.review_service.entity.Review;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 
 @Mapper(componentModel = "spring")
@@ -11,5 +13,9 @@ public interface ReviewMapper {
     // Mappers for ReviewService
     Review toReview (ReviewRequest request);
     ReviewResponse toReviewResponse (Review review);
-    Review updateReview (long id, ReviewRequest request);
+    @Mapping(target = "id_review", ignore = true)
+    @Mapping(target = "id_product", ignore = true)
+    @Mapping(target = "id_user", ignore = true)
+    @Mapping(target = "create_date", ignore = true)
+    void updateReview (@MappingTarget Review review, ReviewRequest request);
 }
@@ -24,4 +24,25 @@ public interface ReviewRepository extends JpaRepository<Review,Long> {
             "LOWER(r.content) LIKE LOWER(CONCAT('%', :keyword, '%')) "
     )
     Page<Review> searchReviews(String keyword, Pageable pageable);
+
+    // Mỗi dòng: id_product, số review có điểm, tổng điểm, số review 1..5 sao
+    @Query("SELECT r.id_product, COUNT(r), SUM(r.rating), " +
+            "SUM(CASE WHEN r.rating = 1 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating = 2 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating = 3 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating = 4 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating = 5 THEN 1 ELSE 0 END) " +
+            "FROM Review r WHERE r.rating BETWEEN 1 AND 5 AND r.id_product > :afterId " +
+            "GROUP BY r.id_product ORDER BY r.id_product")
+    List<Object[]> summarizeRatingsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query("SELECT r.id_product, COUNT(r), SUM(r.rating), " +
+            "SUM(CASE WHEN r.rating = 1 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating = 2 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating = 3 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating = 4 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating = 5 THEN 1 ELSE 0 END) " +
+            "FROM Review r WHERE r.rating BETWEEN 1 AND 5 AND r.id_product = :productId " +
+            "GROUP BY r.id_product")
+    List<Object[]> summarizeRatings(@Param("productId") long productId);
 }
@@ -1,7 +1,9 @@
 package com.example.review_service.service;
 
+import com.example.event.dto.ReviewRatingEvent;
 import com.example.review_service.dto.request.ReviewRequest;
 import com.example.review_service.dto.response.PageResponse;
+import com.example.review_service.dto.response.RatingSummaryResponse;
 import com.example.review_service.dto.response.ReviewResponse;
 import com.example.review_service.entity.Review;
 import com.example.review_service.exception.AppException;
@@ -16,6 +18,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -28,6 +31,9 @@ public class ReviewService {
     ReviewRepository reviewRepository;
     ReviewMapper reviewMapper;
     ProfileClientHttp profileClientHttp;
+    KafkaTemplate<String, Object> kafkaTemplate;
+    static final String REVIEW_RATING_TOPIC = "review-rating";
+    static final int MAX_SUMMARY_PAGE_SIZE = 1000;
     // TODO: Implement review CRUD operations and business logic here.
     public ReviewResponse getReviewById(long id) {
         ReviewResponse review = reviewMapper.toReviewResponse(
@@ -72,8 +78,9 @@ public class ReviewService {
     }
 
     public ReviewResponse createReview(ReviewRequest request) {
-        ReviewResponse reviewResponse = reviewMapper.toReviewResponse(reviewRepository
-                .save(reviewMapper.toReview(request)));
+        Review review = reviewRepository.save(reviewMapper.toReview(request));
+        publishRatingSummary(review.getId_product());
+        ReviewResponse reviewResponse = reviewMapper.toReviewResponse(review);
         reviewResponse.setReviewerResponse(
                 profileClientHttp.getProfile(reviewResponse.getId_user()).getData());
         return reviewResponse;
@@ -81,12 +88,56 @@ public class ReviewService {
     public void updateReview(long id,ReviewRequest request) {
         Review review = reviewRepository.findById(id).orElseThrow(() ->
                 new AppException(ErrorCode.REVIEW_NOT_FOUND));
-        reviewMapper.updateReview(id, request);
+        int oldRating = review.getRating();
+        reviewMapper.updateReview(review, request);
         reviewRepository.save(review);
+        if (oldRating != review.getRating()) {
+            publishRatingSummary(review.getId_product());
+        }
     }
 
     public void deleteReview(long id){
-        reviewRepository.deleteById(id);
+        reviewRepository.findById(id).ifPresent(review -> {
+            reviewRepository.delete(review);
+            publishRatingSummary(review.getId_product());
+        });
+    }
+
+    // Gửi tổng hợp mới nhất của sản phẩm (đọc sau khi review đã lưu), key theo sản phẩm để giữ thứ tự
+    private void publishRatingSummary(long productId) {
+        long asOf = System.currentTimeMillis();
+        ReviewRatingEvent summary = reviewRepository.summarizeRatings(productId).stream()
+                .findFirst()
+                .map(row -> toRatingSummary(row, asOf))
+                .orElseGet(() -> ReviewRatingEvent.builder().productId(productId).asOf(asOf).build());
+        kafkaTemplate.send(REVIEW_RATING_TOPIC, String.valueOf(productId), summary);
+    }
+
+    // product-service dùng khi backfill/đối soát; sản phẩm không có review nào không nằm trong kết quả
+    public RatingSummaryResponse getRatingSummaries(long afterProductId, int size) {
+        long asOf = System.currentTimeMillis();
+        List<ReviewRatingEvent> summaries = reviewRepository.summarizeRatingsAfter(afterProductId,
+                        PageRequest.of(0, Math.min(size, MAX_SUMMARY_PAGE_SIZE))).stream()
+                .map(row -> toRatingSummary(row, asOf))
+                .toList();
+        return RatingSummaryResponse.builder()
+                .asOf(asOf)
+                .summaries(summaries)
+                .build();
+    }
+
+    private static ReviewRatingEvent toRatingSummary(Object[] row, long asOf) {
+        return ReviewRatingEvent.builder()
+                .productId(((Number) row[0]).longValue())
+                .ratingCount(((Number) row[1]).longValue())
+                .ratingSum(((Number) row[2]).longValue())
+                .oneStar(((Number) row[3]).longValue())
+                .twoStar(((Number) row[4]).longValue())
+                .threeStar(((Number) row[5]).longValue())
+                .fourStar(((Number) row[6]).longValue())
+                .fiveStar(((Number) row[7]).longValue())
+                .asOf(asOf)
+                .build();
     }
 
     public List<ReviewResponse> getReviewsByProductId(long productId){